@@ -0,0 +1,131 @@
+package org.poo.benchmarks;
+
+import org.poo.accounts.Account;
+import org.poo.accounts.ClassicAccount;
+import org.poo.bank.Bank;
+import org.poo.bank.User;
+import org.poo.cards.Card;
+import org.poo.fileio.CommandInput;
+import org.poo.fileio.ExchangeInput;
+import org.poo.fileio.UserInput;
+import org.poo.transactions.TransactionService;
+import org.poo.utils.IdGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a populated bank for the benchmarks, through the same public methods the commands use
+ */
+public final class BankFixture {
+    public static final String[] CURRENCIES = {"RON", "EUR", "USD", "GBP"};
+    public static final int COMMERCIANTS = 10;
+
+    private static final double INITIAL_BALANCE = 1_000_000_000;
+    private static final double PAYMENT_AMOUNT = 1.5;
+    private static final double[] RATES = {0.2, 1.1, 0.78};
+
+    private BankFixture() {
+    }
+
+    /**
+     * @return exchange rates chaining all the currencies (RON -> EUR -> USD -> GBP)
+     */
+    public static ExchangeInput[] exchangeRates() {
+        ExchangeInput[] rates = new ExchangeInput[CURRENCIES.length - 1];
+        for (int i = 0; i < rates.length; i++) {
+            rates[i] = new ExchangeInput();
+            rates[i].setFrom(CURRENCIES[i]);
+            rates[i].setTo(CURRENCIES[i + 1]);
+            rates[i].setRate(RATES[i]);
+        }
+        return rates;
+    }
+
+    /**
+     * @param users the number of users
+     * @return the users of the bank
+     */
+    public static UserInput[] users(final int users) {
+        UserInput[] inputs = new UserInput[users];
+        for (int i = 0; i < users; i++) {
+            inputs[i] = new UserInput();
+            inputs[i].setFirstName("First" + i);
+            inputs[i].setLastName("Last" + i);
+            inputs[i].setEmail("user" + i + "@poo.ro");
+        }
+        return inputs;
+    }
+
+    /**
+     * Creates a bank where every user has the same number of accounts (with money in every
+     * currency), every account the same number of cards and every account the same number
+     * of card payments in its history
+     */
+    public static Bank create(final int users, final int accountsPerUser,
+                              final int cardsPerAccount, final int transactionsPerAccount)
+            throws Exception {
+        Bank bank = new Bank(users(users), exchangeRates());
+        IdGenerator ids = bank.getIdGenerator();
+
+        int timestamp = 0;
+        for (User user : bank.getUsers()) {
+            for (int a = 0; a < accountsPerUser; a++) {
+                Account account = new ClassicAccount(ids.generateIBAN(),
+                        CURRENCIES[a % CURRENCIES.length], "classic", timestamp++);
+                bank.addAccountToUser(user.getEmail(), account);
+                account.deposit(INITIAL_BALANCE);
+                for (int c = 0; c < cardsPerAccount; c++) {
+                    user.createCard(account.getIban(), ids.generateCardNumber(), timestamp++);
+                }
+            }
+        }
+
+        TransactionService transactionService = new TransactionService(bank);
+        for (User user : bank.getUsers()) {
+            for (Account account : user.getAccounts()) {
+                if (account.getCards().isEmpty()) {
+                    continue;
+                }
+                String cardNumber = account.getCards().get(0).getCardNumber();
+                for (int t = 0; t < transactionsPerAccount; t++) {
+                    transactionService.payOnline(payOnline(user.getEmail(), cardNumber,
+                            CURRENCIES[t % CURRENCIES.length], t, timestamp++), ids);
+                }
+            }
+        }
+        return bank;
+    }
+
+    /**
+     * @return a payOnline command for the given card
+     */
+    public static CommandInput payOnline(final String email, final String cardNumber,
+                                         final String currency, final int commerciant,
+                                         final int timestamp) {
+        CommandInput command = new CommandInput();
+        command.setCommand("payOnline");
+        command.setEmail(email);
+        command.setCardNumber(cardNumber);
+        command.setAmount(PAYMENT_AMOUNT);
+        command.setCurrency(currency);
+        command.setCommerciant("Commerciant" + (commerciant % COMMERCIANTS));
+        command.setTimestamp(timestamp);
+        return command;
+    }
+
+    /**
+     * @return the numbers of all the cards in the bank
+     */
+    public static List<String> cardNumbers(final Bank bank) {
+        List<String> cardNumbers = new ArrayList<>();
+        for (User user : bank.getUsers()) {
+            for (Account account : user.getAccounts()) {
+                for (Card card : account.getCards()) {
+                    cardNumbers.add(card.getCardNumber());
+                }
+            }
+        }
+        return cardNumbers;
+    }
+}
@@ -0,0 +1,86 @@
+package org.poo.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.poo.bank.Bank;
+import org.poo.bank.User;
+import org.poo.fileio.CommandInput;
+import org.poo.transactions.TransactionService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The steady state of TransactionService.payOnline: successful payments with the (not
+ * one-time) cards of a populated bank, in timestamp order as in the inputs, some of them in
+ * another currency than the one of the account. Meant to be run with {@code -prof gc}: the
+ * only allocation left on this path is the payment row itself, the amortized growth of the
+ * journal columns, of the two histories it is added to and of the spendings buckets
+ * (gc.alloc.rate.norm is a few tens of bytes per operation).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardPaymentBenchmark {
+    @Param({"100", "1000"})
+    int users;
+
+    @Param({"2"})
+    int accountsPerUser;
+
+    @Param({"2"})
+    int cardsPerAccount;
+
+    @Param({"10"})
+    int transactionsPerAccount;
+
+    private Bank bank;
+    private TransactionService transactionService;
+    private CommandInput[] payments;
+    private int next;
+    private int timestamp;
+
+    /**
+     * Builds the bank and one payment command per card
+     */
+    @Setup
+    public void setUp() throws Exception {
+        bank = BankFixture.create(users, accountsPerUser, cardsPerAccount,
+                transactionsPerAccount);
+        transactionService = new TransactionService(bank);
+
+        List<String> cardNumbers = BankFixture.cardNumbers(bank);
+        payments = new CommandInput[cardNumbers.size()];
+        for (int i = 0; i < payments.length; i++) {
+            User user = bank.getUserWithAccount(
+                    bank.getAccountWithCard(cardNumbers.get(i)).getIban());
+            payments[i] = BankFixture.payOnline(user.getEmail(), cardNumbers.get(i),
+                    BankFixture.CURRENCIES[i % BankFixture.CURRENCIES.length], i, 0);
+        }
+        // after all the timestamps of the fixture
+        timestamp = users * accountsPerUser * (1 + cardsPerAccount + transactionsPerAccount);
+    }
+
+    /**
+     * TransactionService.payOnline, cycling through all the cards
+     */
+    @Benchmark
+    public void payOnline() throws Exception {
+        next = next + 1 == payments.length ? 0 : next + 1;
+        CommandInput payment = payments[next];
+        payment.setTimestamp(++timestamp);
+        transactionService.payOnline(payment, bank.getIdGenerator());
+    }
+}
@@ -0,0 +1,185 @@
+package org.poo.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.poo.accounts.Account;
+import org.poo.bank.Bank;
+import org.poo.bank.User;
+import org.poo.fileio.CommandInput;
+import org.poo.reports.ClassicReport;
+import org.poo.reports.SpendingsReport;
+import org.poo.transactions.TransactionService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The command hot paths, on a bank populated by {@link BankFixture}. Every benchmark cycles
+ * through precomputed commands, so only the command itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandBenchmark {
+    private static final int SPLIT_ACCOUNTS = 3;
+    private static final int REPORT_WINDOW_PERCENT = 1;
+    private static final int PERCENT = 100;
+
+    @Param({"100", "1000"})
+    int users;
+
+    @Param({"2"})
+    int accountsPerUser;
+
+    @Param({"2"})
+    int cardsPerAccount;
+
+    @Param({"10", "100"})
+    int transactionsPerAccount;
+
+    private Bank bank;
+    private TransactionService transactionService;
+    private ObjectMapper mapper;
+
+    private String[] cardNumbers;
+    private CommandInput[] payments;
+    private CommandInput[] transfers;
+    private CommandInput[] splits;
+    private CommandInput[] reports;
+    private int next;
+
+    /**
+     * Builds the bank and the commands every benchmark cycles through
+     */
+    @Setup
+    public void setUp() throws Exception {
+        bank = BankFixture.create(users, accountsPerUser, cardsPerAccount,
+                transactionsPerAccount);
+        transactionService = new TransactionService(bank);
+        mapper = new ObjectMapper();
+
+        List<String> cards = BankFixture.cardNumbers(bank);
+        cardNumbers = cards.toArray(new String[0]);
+        payments = new CommandInput[cardNumbers.length];
+        for (int i = 0; i < cardNumbers.length; i++) {
+            User user = bank.getUserWithAccount(
+                    bank.getAccountWithCard(cardNumbers[i]).getIban());
+            payments[i] = BankFixture.payOnline(user.getEmail(), cardNumbers[i],
+                    BankFixture.CURRENCIES[i % BankFixture.CURRENCIES.length], i, i);
+        }
+
+        List<Account> accounts = new ArrayList<>();
+        for (User user : bank.getUsers()) {
+            accounts.addAll(user.getAccounts());
+        }
+        int lastTimestamp = users * accountsPerUser * (1 + cardsPerAccount + transactionsPerAccount);
+        int reportStart = lastTimestamp - lastTimestamp * REPORT_WINDOW_PERCENT / PERCENT;
+
+        transfers = new CommandInput[accounts.size()];
+        splits = new CommandInput[accounts.size()];
+        reports = new CommandInput[accounts.size()];
+        for (int i = 0; i < accounts.size(); i++) {
+            Account from = accounts.get(i);
+            transfers[i] = new CommandInput();
+            transfers[i].setCommand("sendMoney");
+            transfers[i].setAccount(from.getIban());
+            transfers[i].setReceiver(accounts.get((i + 1) % accounts.size()).getIban());
+            transfers[i].setEmail(bank.getUserWithAccount(from.getIban()).getEmail());
+            transfers[i].setAmount(1);
+            transfers[i].setDescription("Transfer");
+
+            List<String> involved = new ArrayList<>();
+            for (int k = 0; k < SPLIT_ACCOUNTS; k++) {
+                involved.add(accounts.get((i + k) % accounts.size()).getIban());
+            }
+            splits[i] = new CommandInput();
+            splits[i].setCommand("splitPayment");
+            splits[i].setAccounts(involved);
+            splits[i].setAmount(SPLIT_ACCOUNTS);
+            splits[i].setCurrency("EUR");
+
+            reports[i] = new CommandInput();
+            reports[i].setAccount(from.getIban());
+            reports[i].setStartTimestamp(reportStart);
+            reports[i].setEndTimestamp(lastTimestamp);
+        }
+    }
+
+    private int next(final int length) {
+        next = next + 1 == length ? 0 : next + 1;
+        return next;
+    }
+
+    /**
+     * TransactionService.payOnline, cycling through all the cards
+     */
+    @Benchmark
+    public void payOnline() throws Exception {
+        transactionService.payOnline(payments[next(payments.length)], bank.getIdGenerator());
+    }
+
+    /**
+     * TransactionService.sendMoney between consecutive accounts
+     */
+    @Benchmark
+    public void sendMoney() throws Exception {
+        transactionService.sendMoney(transfers[next(transfers.length)]);
+    }
+
+    /**
+     * TransactionService.splitPayment between consecutive accounts
+     */
+    @Benchmark
+    public void splitPayment() {
+        transactionService.splitPayment(splits[next(splits.length)]);
+    }
+
+    /**
+     * ExchangeRate.getExchangeRate over the longest path of the fixture (three rates)
+     */
+    @Benchmark
+    public double getExchangeRate() throws Exception {
+        return bank.getExchangeRate("RON", "GBP");
+    }
+
+    /**
+     * Bank.getAccountWithCard, cycling through all the cards
+     */
+    @Benchmark
+    public void getAccountWithCard(final Blackhole blackhole) {
+        blackhole.consume(bank.getAccountWithCard(cardNumbers[next(cardNumbers.length)]));
+    }
+
+    /**
+     * ClassicReport over the last percent of the history
+     */
+    @Benchmark
+    public void classicReport(final Blackhole blackhole) throws Exception {
+        blackhole.consume(new ClassicReport(bank)
+                .generateReport(reports[next(reports.length)], mapper));
+    }
+
+    /**
+     * SpendingsReport over the last percent of the history
+     */
+    @Benchmark
+    public void spendingsReport(final Blackhole blackhole) throws Exception {
+        blackhole.consume(new SpendingsReport(bank)
+                .generateReport(reports[next(reports.length)], mapper));
+    }
+}
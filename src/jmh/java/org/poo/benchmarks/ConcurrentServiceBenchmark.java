@@ -0,0 +1,165 @@
+package org.poo.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.poo.accounts.Account;
+import org.poo.bank.Bank;
+import org.poo.bank.User;
+import org.poo.fileio.CommandInput;
+import org.poo.transactions.TransactionService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput of one TransactionService shared by several threads, with the striped
+ * account locks. Every thread walks the precomputed commands from its own offset, so the
+ * threads mostly touch different accounts (a few hot accounts can be simulated with a small
+ * number of users). All the available cores are used unless the thread count is given with
+ * {@code -t}, so the scaling is measured by running it with {@code -t 1}, {@code -t 2}, ...
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(Threads.MAX)
+@Fork(1)
+public class ConcurrentServiceBenchmark {
+    private static final int SPLIT_ACCOUNTS = 3;
+
+    @Param({"100", "1000"})
+    int users;
+
+    @Param({"2"})
+    int accountsPerUser;
+
+    @Param({"2"})
+    int cardsPerAccount;
+
+    @Param({"0"})
+    int transactionsPerAccount;
+
+    private Bank bank;
+    private TransactionService transactionService;
+    private CommandInput[] payments;
+    private CommandInput[] transfers;
+    private CommandInput[] splits;
+
+    /**
+     * The position of a thread in the commands
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private static final int STRIDE = 7919;
+        private static int threads;
+        private int next;
+
+        /**
+         * Starts every thread at a different offset
+         */
+        @Setup
+        public void setUp() {
+            synchronized (Cursor.class) {
+                next = threads++ * STRIDE;
+            }
+        }
+
+        int next(final int length) {
+            next = (next + 1) % length;
+            return next;
+        }
+    }
+
+    /**
+     * Builds the bank and the commands
+     */
+    @Setup
+    public void setUp() throws Exception {
+        bank = BankFixture.create(users, accountsPerUser, cardsPerAccount,
+                transactionsPerAccount);
+        bank.getJournal().setConcurrent(true);
+        transactionService = new TransactionService(bank);
+
+        List<String> cardNumbers = BankFixture.cardNumbers(bank);
+        payments = new CommandInput[cardNumbers.size()];
+        for (int i = 0; i < payments.length; i++) {
+            Account account = bank.getAccountWithCard(cardNumbers.get(i));
+            payments[i] = BankFixture.payOnline(
+                    bank.getUserWithAccount(account.getIban()).getEmail(), cardNumbers.get(i),
+                    account.getCurrency(), i, i);
+        }
+
+        List<Account> accounts = new ArrayList<>();
+        for (User user : bank.getUsers()) {
+            accounts.addAll(user.getAccounts());
+        }
+        transfers = new CommandInput[accounts.size()];
+        splits = new CommandInput[accounts.size()];
+        for (int i = 0; i < accounts.size(); i++) {
+            Account from = accounts.get(i);
+            transfers[i] = new CommandInput();
+            transfers[i].setCommand("sendMoney");
+            transfers[i].setAccount(from.getIban());
+            transfers[i].setReceiver(accounts.get((i + 1) % accounts.size()).getIban());
+            transfers[i].setEmail(bank.getUserWithAccount(from.getIban()).getEmail());
+            transfers[i].setAmount(1);
+            transfers[i].setDescription("Transfer");
+
+            List<String> involved = new ArrayList<>();
+            for (int k = 0; k < SPLIT_ACCOUNTS; k++) {
+                involved.add(accounts.get((i + k) % accounts.size()).getIban());
+            }
+            splits[i] = new CommandInput();
+            splits[i].setCommand("splitPayment");
+            splits[i].setAccounts(involved);
+            splits[i].setAmount(SPLIT_ACCOUNTS);
+            splits[i].setCurrency("EUR");
+        }
+    }
+
+    /**
+     * Takes the journal out of its concurrent mode
+     */
+    @TearDown
+    public void tearDown() {
+        bank.getJournal().setConcurrent(false);
+    }
+
+    /**
+     * TransactionService.payOnline, one account locked
+     */
+    @Benchmark
+    public void payOnline(final Cursor cursor) throws Exception {
+        transactionService.payOnline(payments[cursor.next(payments.length)],
+                bank.getIdGenerator());
+    }
+
+    /**
+     * TransactionService.sendMoney, two accounts locked in order
+     */
+    @Benchmark
+    public void sendMoney(final Cursor cursor) throws Exception {
+        transactionService.sendMoney(transfers[cursor.next(transfers.length)]);
+    }
+
+    /**
+     * TransactionService.splitPayment, three accounts locked in order
+     */
+    @Benchmark
+    public void splitPayment(final Cursor cursor) {
+        transactionService.splitPayment(splits[cursor.next(splits.length)]);
+    }
+}
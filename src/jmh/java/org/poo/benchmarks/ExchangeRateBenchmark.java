@@ -0,0 +1,98 @@
+package org.poo.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.poo.bank.ExchangeRate;
+import org.poo.bank.RateTable;
+import org.poo.fileio.ExchangeInput;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The two rate tables on a large, sparse currency graph (a random tree) where only a few of
+ * the currencies are used: building the table from the rates (the matrix resolves every pair
+ * up front, the cache none) and looking up the pairs of the used currencies
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExchangeRateBenchmark {
+    private static final double MIN_RATE = 0.5;
+
+    @Param({"500"})
+    int currencies;
+
+    @Param({"8"})
+    int usedCurrencies;
+
+    @Param({"matrix", "cached"})
+    String table;
+
+    @Param({"1024"})
+    int cacheSize;
+
+    private ExchangeInput[] rates;
+    private ExchangeRate exchangeRate;
+    private int[] fromIds;
+    private int[] toIds;
+    private int next;
+
+    /**
+     * Builds the graph, the table and the pairs that are looked up
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        rates = new ExchangeInput[currencies - 1];
+        for (int i = 1; i < currencies; i++) {
+            rates[i - 1] = new ExchangeInput();
+            rates[i - 1].setFrom("C" + random.nextInt(i));
+            rates[i - 1].setTo("C" + i);
+            rates[i - 1].setRate(MIN_RATE + random.nextDouble());
+        }
+        exchangeRate = create();
+
+        fromIds = new int[usedCurrencies * usedCurrencies];
+        toIds = new int[fromIds.length];
+        int[] used = new int[usedCurrencies];
+        for (int i = 0; i < usedCurrencies; i++) {
+            used[i] = exchangeRate.getCurrencyId("C" + random.nextInt(currencies));
+        }
+        for (int i = 0; i < fromIds.length; i++) {
+            fromIds[i] = used[i / usedCurrencies];
+            toIds[i] = used[i % usedCurrencies];
+        }
+    }
+
+    /**
+     * @return a table of the chosen kind with all the rates of the graph
+     */
+    @Benchmark
+    public ExchangeRate create() {
+        RateTable rateTable = "cached".equals(table) ? RateTable.cached(cacheSize)
+                : RateTable.matrix();
+        return new ExchangeRate(rates, rateTable);
+    }
+
+    /**
+     * The rate of one of the pairs of the used currencies
+     */
+    @Benchmark
+    public double lookup() {
+        next = next + 1 == fromIds.length ? 0 : next + 1;
+        return exchangeRate.getExchangeRate(fromIds[next], toIds[next]);
+    }
+}
@@ -0,0 +1,82 @@
+package org.poo.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.poo.bank.InitBank;
+import org.poo.fileio.ObjectInput;
+import org.poo.generator.WorkloadGenerator;
+import org.poo.output.JsonGeneratorSink;
+import org.poo.output.OutputSink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole InitBank.run loop over an input from the WorkloadGenerator (the setup phase plus
+ * transactionsPerAccount commands for every account), with the output serialized (compact)
+ * and discarded
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RunBenchmark {
+    @Param({"100", "1000"})
+    int users;
+
+    @Param({"2"})
+    int accountsPerUser;
+
+    @Param({"2"})
+    int cardsPerAccount;
+
+    @Param({"10", "100"})
+    int transactionsPerAccount;
+
+    private ObjectInput input;
+    private ObjectMapper mapper;
+
+    /**
+     * Generates the input once per trial
+     */
+    @Setup
+    public void setUp() throws IOException {
+        ByteArrayOutputStream generated = new ByteArrayOutputStream();
+        new WorkloadGenerator.WorkloadGeneratorBuilder()
+                .setUsers(users)
+                .setAccountsPerUser(accountsPerUser)
+                .setCardsPerAccount(cardsPerAccount)
+                .setCommands(users * accountsPerUser * transactionsPerAccount)
+                .build()
+                .generate(generated);
+
+        mapper = new ObjectMapper();
+        input = mapper.readValue(generated.toByteArray(), ObjectInput.class);
+    }
+
+    /**
+     * Builds the bank and runs all the commands
+     */
+    @Benchmark
+    public void run() throws IOException {
+        try (OutputSink output = new JsonGeneratorSink(OutputStream.nullOutputStream(),
+                mapper, false)) {
+            InitBank initBank = new InitBank(input, output);
+            initBank.run(input);
+        }
+    }
+}
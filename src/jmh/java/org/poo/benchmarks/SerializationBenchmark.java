@@ -0,0 +1,96 @@
+package org.poo.benchmarks;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.poo.bank.Bank;
+import org.poo.bank.User;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * printTransactions and printUsers serialized through ObjectNode trees versus written
+ * straight to the generator. Run with "-prof gc" and compare gc.alloc.rate.norm (bytes/op).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({"10", "100"})
+    int users;
+
+    @Param({"2"})
+    int accountsPerUser;
+
+    @Param({"2"})
+    int cardsPerAccount;
+
+    @Param({"100", "1000"})
+    int transactionsPerAccount;
+
+    private Bank bank;
+    private User user;
+    private ObjectMapper mapper;
+    private JsonGenerator generator;
+
+    /**
+     * Builds the bank and a generator that discards everything it writes
+     */
+    @Setup
+    public void setUp() throws Exception {
+        bank = BankFixture.create(users, accountsPerUser, cardsPerAccount,
+                transactionsPerAccount);
+        user = bank.getUsers().get(0);
+        mapper = new ObjectMapper();
+        generator = mapper.getFactory().createGenerator(OutputStream.nullOutputStream());
+    }
+
+    /**
+     * printTransactions through an ArrayNode of ObjectNodes
+     */
+    @Benchmark
+    public void printTransactionsObjectNode() throws IOException {
+        mapper.writeValue(generator, user.transactionsTransformToArrayNode(mapper));
+    }
+
+    /**
+     * printTransactions written field by field
+     */
+    @Benchmark
+    public void printTransactionsGenerator() throws IOException {
+        user.writeTransactionsTo(generator);
+        generator.flush();
+    }
+
+    /**
+     * printUsers through an ArrayNode of ObjectNodes
+     */
+    @Benchmark
+    public void printUsersObjectNode() throws IOException {
+        mapper.writeValue(generator, bank.usersTransformToArrayNode(mapper));
+    }
+
+    /**
+     * printUsers written field by field
+     */
+    @Benchmark
+    public void printUsersGenerator() throws IOException {
+        bank.writeUsersTo(generator);
+        generator.flush();
+    }
+}
@@ -0,0 +1,109 @@
+package org.poo.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.poo.bank.Bank;
+import org.poo.bank.BankSnapshot;
+import org.poo.bank.InitBank;
+import org.poo.fileio.ObjectInput;
+import org.poo.generator.WorkloadGenerator;
+import org.poo.output.JsonGeneratorSink;
+import org.poo.output.OutputSink;
+import org.poo.transactions.TransactionJournal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Getting to the state of the bank after an input from the WorkloadGenerator, by replaying
+ * all of its commands (as RunBenchmark) versus loading the snapshot saved after that run
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+    @Param({"100", "1000"})
+    int users;
+
+    @Param({"2"})
+    int accountsPerUser;
+
+    @Param({"2"})
+    int cardsPerAccount;
+
+    @Param({"10", "100"})
+    int transactionsPerAccount;
+
+    private ObjectInput input;
+    private ObjectMapper mapper;
+    private byte[] snapshot;
+
+    /**
+     * Generates the input and saves the snapshot of its run once per trial
+     */
+    @Setup
+    public void setUp() throws IOException {
+        ByteArrayOutputStream generated = new ByteArrayOutputStream();
+        new WorkloadGenerator.WorkloadGeneratorBuilder()
+                .setUsers(users)
+                .setAccountsPerUser(accountsPerUser)
+                .setCardsPerAccount(cardsPerAccount)
+                .setCommands(users * accountsPerUser * transactionsPerAccount)
+                .build()
+                .generate(generated);
+
+        mapper = new ObjectMapper();
+        input = mapper.readValue(generated.toByteArray(), ObjectInput.class);
+
+        Path file = Files.createTempFile("bank", ".snapshot");
+        try {
+            try (OutputSink output = new JsonGeneratorSink(OutputStream.nullOutputStream(),
+                    mapper, false)) {
+                InitBank initBank = new InitBank(input, output);
+                initBank.setSnapshotFile(file);
+                initBank.run(input);
+            }
+            snapshot = Files.readAllBytes(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Builds the bank and runs all the commands
+     */
+    @Benchmark
+    public void replay() throws IOException {
+        try (OutputSink output = new JsonGeneratorSink(OutputStream.nullOutputStream(),
+                mapper, false)) {
+            InitBank initBank = new InitBank(input, output);
+            initBank.run(input);
+        }
+    }
+
+    /**
+     * Restores the bank from the snapshot
+     */
+    @Benchmark
+    public Bank load() throws IOException {
+        return BankSnapshot.read(new ByteArrayInputStream(snapshot), new TransactionJournal());
+    }
+}
@@ -0,0 +1,237 @@
+package org.poo.benchmarks;
+
+import org.poo.accounts.Account;
+import org.poo.bank.Bank;
+import org.poo.bank.User;
+import org.poo.fileio.CommandInput;
+import org.poo.transactions.TransactionJournal;
+import org.poo.transactions.TransactionKind;
+import org.poo.transactions.TransactionService;
+import org.poo.transactions.TransactionView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hammers one TransactionService from several threads with payOnline, sendMoney (in both
+ * directions between the same accounts) and splitPayment over a small set of accounts with
+ * little money, then checks that no account went below zero and that no update was lost:
+ * all the amounts are exact in binary, so the money left must be exactly the money at the
+ * start minus the card and split payments recorded in the journal. Meanwhile another thread
+ * keeps changing an exchange rate (one the operations do not need, as they only convert
+ * between accounts with the same currency), and every transaction that converted an amount
+ * must have recorded one of the versions of the rates that were published.
+ * <p>
+ * Usage: {@code TransactionServiceStress [threads] [operations per thread]}; it exits with
+ * status 1 if a check fails and 2 if the threads do not finish (a deadlock).
+ */
+public final class TransactionServiceStress {
+    private static final int DEFAULT_THREADS = 8;
+    private static final int DEFAULT_OPERATIONS = 200_000;
+    private static final int USERS = 16;
+    private static final int ACCOUNTS_PER_USER = 2;
+    private static final int CARDS_PER_ACCOUNT = 2;
+    private static final double BALANCE = 1_000;
+    private static final double TRANSFER_AMOUNT = 1;
+    private static final double PAYMENT_AMOUNT = 1.5;
+    private static final int SPLIT_ACCOUNTS = 3;
+    private static final int OPERATION_KINDS = 3;
+    private static final long TIMEOUT_MINUTES = 5;
+    private static final int DEADLOCK_STATUS = 2;
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final long RATE_UPDATE_MILLIS = 1;
+    private static final double RATE_STEP = 0.001;
+
+    private TransactionServiceStress() {
+    }
+
+    /**
+     * @param args the number of threads and the operations every thread runs
+     */
+    public static void main(final String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_THREADS;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_OPERATIONS;
+
+        Bank bank = BankFixture.create(USERS, ACCOUNTS_PER_USER, CARDS_PER_ACCOUNT, 0);
+        List<Account> accounts = new ArrayList<>();
+        for (User user : bank.getUsers()) {
+            accounts.addAll(user.getAccounts());
+        }
+        for (Account account : accounts) {
+            account.setBalance(BALANCE);
+        }
+        double initialTotal = BALANCE * accounts.size();
+
+        bank.getJournal().setConcurrent(true);
+        TransactionService transactionService = new TransactionService(bank);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(t);
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < operations; i++) {
+                    run(bank, transactionService, accounts, random, i);
+                }
+                return null;
+            }));
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread rateUpdater = new Thread(() -> updateRates(bank, running));
+
+        long begin = System.nanoTime();
+        start.countDown();
+        rateUpdater.start();
+        pool.shutdown();
+        if (!pool.awaitTermination(TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+            System.err.println("The threads did not finish, possible deadlock");
+            System.exit(DEADLOCK_STATUS);
+        }
+        long elapsed = System.nanoTime() - begin;
+        running.set(false);
+        rateUpdater.join();
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        bank.getJournal().setConcurrent(false);
+
+        double total = 0;
+        boolean failed = false;
+        for (Account account : accounts) {
+            total += account.getBalance();
+            if (account.getBalance() < 0) {
+                System.err.println(account.getIban() + " went below zero: "
+                        + account.getBalance());
+                failed = true;
+            }
+        }
+        double expected = initialTotal
+                - PAYMENT_AMOUNT * bank.getJournal().count(TransactionKind.CARD_PAYMENT)
+                - TRANSFER_AMOUNT * bank.getJournal().count(TransactionKind.SPLIT_PAYMENT);
+        if (total != expected) {
+            System.err.println("Money was lost or made: " + total + " instead of " + expected);
+            failed = true;
+        }
+        if (!checkRateVersions(bank)) {
+            failed = true;
+        }
+
+        long done = (long) threads * operations;
+        System.out.printf("%d threads, %d operations in %.1f ms (%.0f operations/s): %s%n",
+                threads, done, elapsed / NANOS_PER_MILLI, done * NANOS_PER_SECOND / elapsed,
+                failed ? "FAILED" : "OK");
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Publishes a new rate between the first two currencies of the fixture until stopped
+     */
+    private static void updateRates(final Bank bank, final AtomicBoolean running) {
+        double rate = BankFixture.exchangeRates()[0].getRate();
+        while (running.get()) {
+            rate += RATE_STEP;
+            bank.addExchangeRate(BankFixture.CURRENCIES[0], BankFixture.CURRENCIES[1], rate);
+            try {
+                Thread.sleep(RATE_UPDATE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true if the transactions that converted an amount recorded a version that was
+     * published and the others recorded none
+     */
+    private static boolean checkRateVersions(final Bank bank) {
+        int lastVersion = bank.getRateTable().getVersion();
+        if (lastVersion != bank.getAddedRates().size()) {
+            System.err.println("Rate version " + lastVersion + " after "
+                    + bank.getAddedRates().size() + " updates");
+            return false;
+        }
+
+        TransactionJournal journal = bank.getJournal();
+        for (int row = 0; row < journal.size(); row++) {
+            TransactionView view = journal.view(row);
+            int version = view.getRateVersion();
+            boolean converts = switch (view.getKind()) {
+                case CARD_PAYMENT, TRANSFER_SENT, TRANSFER_RECEIVED, SPLIT_PAYMENT,
+                     SPLIT_PAYMENT_FAILED -> true;
+                default -> false;
+            };
+            if (converts ? version < 0 || version > lastVersion
+                    : version != TransactionJournal.NO_RATE_VERSION) {
+                System.err.println("Row " + row + " (" + view.getKind()
+                        + ") recorded the rate version " + version);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs a random operation; the transfers and the splits only use accounts with the same
+     * currency (the accounts of the same index of every user), so every amount stays exact
+     */
+    private static void run(final Bank bank, final TransactionService transactionService,
+                            final List<Account> accounts, final Random random,
+                            final int timestamp) throws Exception {
+        Account account = accounts.get(random.nextInt(accounts.size()));
+        User user = bank.getUserWithAccount(account.getIban());
+        switch (random.nextInt(OPERATION_KINDS)) {
+            case 0 -> transactionService.payOnline(BankFixture.payOnline(user.getEmail(),
+                    account.getCards().get(random.nextInt(CARDS_PER_ACCOUNT))
+                            .getCardNumber(), account.getCurrency(), timestamp, timestamp),
+                    bank.getIdGenerator());
+            case 1 -> {
+                Account receiver = sameCurrency(accounts, account, random);
+                CommandInput transfer = new CommandInput();
+                transfer.setCommand("sendMoney");
+                transfer.setAccount(account.getIban());
+                transfer.setReceiver(receiver.getIban());
+                transfer.setEmail(user.getEmail());
+                transfer.setAmount(TRANSFER_AMOUNT);
+                transfer.setDescription("Transfer");
+                transfer.setTimestamp(timestamp);
+                transactionService.sendMoney(transfer);
+            }
+            default -> {
+                // distinct accounts, an account listed twice is only checked for one share
+                List<String> involved = new ArrayList<>();
+                while (involved.size() < SPLIT_ACCOUNTS) {
+                    String iban = sameCurrency(accounts, account, random).getIban();
+                    if (!involved.contains(iban)) {
+                        involved.add(iban);
+                    }
+                }
+                CommandInput split = new CommandInput();
+                split.setCommand("splitPayment");
+                split.setAccounts(involved);
+                split.setAmount(TRANSFER_AMOUNT * SPLIT_ACCOUNTS);
+                split.setCurrency(account.getCurrency());
+                split.setTimestamp(timestamp);
+                transactionService.splitPayment(split);
+            }
+        }
+    }
+
+    private static Account sameCurrency(final List<Account> accounts, final Account account,
+                                        final Random random) {
+        int index = accounts.indexOf(account) % ACCOUNTS_PER_USER;
+        return accounts.get(random.nextInt(USERS) * ACCOUNTS_PER_USER + index);
+    }
+}
@@ -1,53 +1,78 @@
 package org.poo.accounts;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.poo.cards.Card;
 import org.poo.cards.OneTimeCard;
-import org.poo.transactions.Transaction;
+import org.poo.transactions.SpendingsIndex;
+import org.poo.transactions.TransactionLog;
 
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
 
-import static org.poo.utils.Utils.generateIBAN;
-
 @Getter
 @Setter
 public abstract class Account {
+    private static final VarHandle BALANCE;
+
+    static {
+        try {
+            BALANCE = MethodHandles.lookup().findVarHandle(Account.class, "balance", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private String iban;
-    private double balance;
+    // the bits of the balance (a double), only changed by compare-and-set, so payments and
+    // deposits from several threads never lose an update and need no lock
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile long balance;
     private String currency;
+    // the id of the currency in the exchange rates of the bank when the account was added, -1
+    // if it had no rates then (it is looked up by name, see RateTable.getExchangeRate)
+    private int currencyId;
     private String type;
     private ArrayList<Card> cards;
     private int timestamp;
     private String alias;
     private double minBalance;
-    private ArrayList<Transaction> transactions;
+    private TransactionLog transactions;
 
-    public Account(final String currency, final String type, final int timestamp) {
-        this.iban = generateIBAN();
+    public Account(final String iban, final String currency, final String type,
+                   final int timestamp) {
+        this.iban = iban;
         this.balance = 0;
         this.currency = currency;
+        this.currencyId = -1;
         this.type = type;
         this.timestamp = timestamp;
         this.minBalance = 0;
         this.cards = new ArrayList<>();
-        this.transactions = new ArrayList<>();
+        // the history is created when the account is added to a user, over the journal of its bank
+        this.transactions = null;
     }
 
     /**
-     * @param cardNumber the card number of the card to be returned from this account
-     * @return the card with the given card number
+     * @return the balance of the account
      */
-    public Card getCard(final String cardNumber) {
-        for (Card card : cards) {
-            if (card.getCardNumber().equals(cardNumber)) {
-                return card;
-            }
-        }
-        return null;
+    public double getBalance() {
+        return Double.longBitsToDouble(balance);
+    }
+
+    /**
+     * @param argBalance the new balance of the account
+     */
+    public void setBalance(final double argBalance) {
+        this.balance = Double.doubleToRawLongBits(argBalance);
     }
 
     /**
@@ -56,14 +81,14 @@ public abstract class Account {
      * @return true if the account has enough balance
      */
     public boolean hasEnoughBalance(final double amount) {
-        return balance >= amount;
+        return getBalance() >= amount;
     }
 
     /**
      * @return true if the account has money in it
      */
     public boolean hasMoneyInAccount() {
-        return balance > 0;
+        return getBalance() > 0;
     }
 
     /**
@@ -77,19 +102,23 @@ public abstract class Account {
     /**
      * Creates a one-time card with the given card number
      * @param cardNumber the card number of the one-time card to be created
+     * @return the created card
      */
-    public void createOneTimeCard(final String cardNumber) {
+    public Card createOneTimeCard(final String cardNumber) {
         OneTimeCard card = new OneTimeCard(cardNumber);
         cards.add(card);
+        return card;
     }
 
     /**
      * Creates a card with the given card number
      * @param cardNumber the card number of the card to be created
+     * @return the created card
      */
-    public void createCard(final String cardNumber) {
+    public Card createCard(final String cardNumber) {
         Card card = new Card(cardNumber);
         cards.add(card);
+        return card;
     }
 
     /**
@@ -97,23 +126,75 @@ public abstract class Account {
      * @param amount the amount to be deposited in the account
      */
     public void deposit(final double amount) {
-        balance += amount;
+        long current;
+        do {
+            current = balance;
+        } while (!BALANCE.compareAndSet(this, current,
+                Double.doubleToRawLongBits(Double.longBitsToDouble(current) + amount)));
     }
 
     /**
-     * Decreases the balance of the account
+     * Decreases the balance of the account, even below zero
      * @param amount the amount to be withdrawn from the account
      */
     public void withdraw(final double amount) {
-        balance -= amount;
+        deposit(-amount);
+    }
+
+    /**
+     * Adds interest to the balance: the balance the interest is computed on and the new
+     * balance are read and set in one compare-and-set, so a payment made meanwhile is never
+     * paid interest on
+     * @param rate the interest rate
+     */
+    protected void depositInterest(final double rate) {
+        long current;
+        double value;
+        do {
+            current = balance;
+            value = Double.longBitsToDouble(current);
+        } while (!BALANCE.compareAndSet(this, current,
+                Double.doubleToRawLongBits(value + value * rate)));
+    }
+
+    /**
+     * Withdraws the amount only if the account has enough balance for it (the same check as
+     * hasEnoughBalance), as one atomic step: no other payment can change the balance between
+     * the check and the withdrawal
+     * @param amount the amount to be withdrawn from the account
+     * @return true if the amount was withdrawn, false if the balance was too low
+     */
+    public boolean tryWithdraw(final double amount) {
+        long current;
+        double left;
+        do {
+            current = balance;
+            double value = Double.longBitsToDouble(current);
+            if (!(value >= amount)) {
+                return false;
+            }
+            left = value - amount;
+        } while (!BALANCE.compareAndSet(this, current, Double.doubleToRawLongBits(left)));
+        return true;
     }
 
     /**
-     * Adds a transaction to the account's list of transactions
-     * @param transaction the transaction to be added to the account's list of transactions
+     * Records a card payment in the per-commerciant totals of the account; only the accounts
+     * that support spendings reports keep these totals
+     * @param commerciant the commerciant that was paid
+     * @param paymentTimestamp the timestamp of the payment
+     * @param amount the amount paid, in the currency of the account
      */
-    public void addTransaction(final Transaction transaction) {
-        transactions.add(transaction);
+    public void addSpending(final String commerciant, final int paymentTimestamp,
+                            final double amount) {
+    }
+
+    /**
+     * @return the per-commerciant totals of the account or null if the account does not
+     * keep them
+     */
+    public SpendingsIndex getSpendings() {
+        return null;
     }
 
     /**
@@ -136,7 +217,7 @@ public abstract class Account {
     public ObjectNode transformToObjectNode(final ObjectMapper objectMapper) {
         ObjectNode accountNode = objectMapper.createObjectNode();
         accountNode.put("IBAN", iban);
-        accountNode.put("balance", balance);
+        accountNode.put("balance", getBalance());
         accountNode.put("currency", currency);
         accountNode.put("type", type);
 
@@ -150,4 +231,27 @@ public abstract class Account {
 
         return accountNode;
     }
+
+    /**
+     * Writes the account straight through the generator (same fields as transformToObjectNode)
+     * @param generator the generator the account is written to
+     * @throws IOException if the account cannot be written
+     */
+    public void writeTo(final JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("IBAN", iban);
+        generator.writeNumberField("balance", getBalance());
+        generator.writeStringField("currency", currency);
+        generator.writeStringField("type", type);
+
+        generator.writeArrayFieldStart("cards");
+        if (cards != null) {
+            for (Card card : cards) {
+                card.writeTo(generator);
+            }
+        }
+        generator.writeEndArray();
+
+        generator.writeEndObject();
+    }
 }
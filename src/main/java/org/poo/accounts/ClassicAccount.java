@@ -1,8 +1,34 @@
 package org.poo.accounts;
 
+import org.poo.transactions.SpendingsIndex;
+
 public class ClassicAccount extends Account {
-    public ClassicAccount(final String currency, final String type, final int timestamp) {
-        super(currency, type, timestamp);
+    private final SpendingsIndex spendings;
+
+    public ClassicAccount(final String iban, final String currency, final String type,
+                          final int timestamp) {
+        super(iban, currency, type, timestamp);
+        this.spendings = new SpendingsIndex();
+    }
+
+    /**
+     * Adds the payment to the running per-commerciant totals used by the spendings report
+     * @param commerciant the commerciant that was paid
+     * @param paymentTimestamp the timestamp of the payment
+     * @param amount the amount paid, in the currency of the account
+     */
+    @Override
+    public void addSpending(final String commerciant, final int paymentTimestamp,
+                            final double amount) {
+        spendings.addPayment(commerciant, paymentTimestamp, amount);
+    }
+
+    /**
+     * @return the per-commerciant totals of the account
+     */
+    @Override
+    public SpendingsIndex getSpendings() {
+        return spendings;
     }
 
     /**
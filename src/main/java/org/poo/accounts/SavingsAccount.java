@@ -4,15 +4,16 @@ import lombok.Getter;
 import lombok.Setter;
 import org.poo.bank.User;
 import org.poo.transactions.Transaction;
+import org.poo.transactions.TransactionKind;
 
 @Setter
 @Getter
 public class SavingsAccount extends Account {
     private double interestRate;
 
-    public SavingsAccount(final String currency, final String type, final int timestamp,
-                          final double interestRate) {
-        super(currency, type, timestamp);
+    public SavingsAccount(final String iban, final String currency, final String type,
+                          final int timestamp, final double interestRate) {
+        super(iban, currency, type, timestamp);
         this.interestRate = interestRate;
     }
 
@@ -28,8 +29,7 @@ public class SavingsAccount extends Account {
      * adds interest to the account
      */
     public void addInterest() {
-        double interest = getBalance() * interestRate;
-        deposit(interest);
+        depositInterest(interestRate);
     }
 
     /**
@@ -40,12 +40,13 @@ public class SavingsAccount extends Account {
         this.interestRate = newInterestRate;
 
         Transaction transaction = new Transaction.TransactionBuilder()
+                .setKind(TransactionKind.INTEREST_RATE_CHANGED)
                 .setDescription("Interest rate of the account changed to " + newInterestRate)
                 .setTimestamp(argTimestamp)
                 .build();
 
-        user.addTransaction(transaction);
-        this.addTransaction(transaction);
+        int row = user.addTransaction(transaction);
+        this.getTransactions().addRow(row);
     }
 
     /**
@@ -1,5 +1,6 @@
 package org.poo.bank;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -13,43 +14,86 @@ import org.poo.fileio.UserInput;
 import org.poo.reports.ClassicReport;
 import org.poo.reports.ReportGenerator;
 import org.poo.reports.SpendingsReport;
+import org.poo.transactions.AccountLocks;
 import org.poo.transactions.Transaction;
+import org.poo.transactions.TransactionJournal;
+import org.poo.transactions.TransactionKind;
+import org.poo.utils.IdGenerator;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Map;
 
 import static org.poo.utils.Utils.MIN_BALANCE_DIFFERENCE;
 
 @Getter
 public final class Bank extends ExchangeRate {
     private final ArrayList<User> users;
-    private static Bank bank;
+    private final Registry registry;
+    private final TransactionJournal journal;
+    private final IdGenerator idGenerator;
+    private final AccountLocks accountLocks;
+    // how many commands were run on the bank, including the ones waiting in the segment of a
+    // CommandScheduler (the sequence number of the next one)
+    private long commandCount;
 
-    private Bank(final UserInput[] users, final ExchangeInput[] exchangeRates) {
-        super(exchangeRates);
-        this.users = new ArrayList<>();
-        for (UserInput user : users) {
-            this.users.add(new User(user));
-        }
+    /**
+     * @param users the users of the bank
+     * @param exchangeRates the exchange rates of the bank
+     */
+    public Bank(final UserInput[] users, final ExchangeInput[] exchangeRates) {
+        this(users, exchangeRates, new TransactionJournal(), new IdGenerator());
+    }
+
+    /**
+     * Every bank is independent of the others: it has its own journal and generator, so
+     * several banks can run at the same time
+     * @param users the users of the bank
+     * @param exchangeRates the exchange rates of the bank
+     * @param journal the journal where the transactions of the bank are kept
+     * @param idGenerator the generator of the IBANs and card numbers of the bank
+     */
+    public Bank(final UserInput[] users, final ExchangeInput[] exchangeRates,
+                final TransactionJournal journal, final IdGenerator idGenerator) {
+        this(users, exchangeRates, journal, idGenerator, RateTable.matrix());
     }
 
     /**
-     * Static method to create a unique bank instance (singleton pattern)
      * @param users the users of the bank
      * @param exchangeRates the exchange rates of the bank
-     * @return the bank instance
+     * @param journal the journal where the transactions of the bank are kept
+     * @param idGenerator the generator of the IBANs and card numbers of the bank
+     * @param rateTable the (empty) table where the exchange rates are kept and resolved
      */
-    public static Bank getInstance(final UserInput[] users, final ExchangeInput[] exchangeRates) {
-        if (bank == null) {
-            bank = new Bank(users, exchangeRates);
+    public Bank(final UserInput[] users, final ExchangeInput[] exchangeRates,
+                final TransactionJournal journal, final IdGenerator idGenerator,
+                final RateTable rateTable) {
+        super(exchangeRates, rateTable);
+        this.users = new ArrayList<>();
+        this.registry = new Registry();
+        this.journal = journal;
+        this.idGenerator = idGenerator;
+        this.accountLocks = new AccountLocks();
+        for (UserInput userInput : users) {
+            User user = new User(userInput, registry, journal);
+            this.users.add(user);
+            registry.registerUser(user);
         }
-        return bank;
     }
 
     /**
-     * Resets the bank instance as every time the program is run, a new bank instance is created
+     * Counts a command run on the bank
+     */
+    void countCommand() {
+        commandCount++;
+    }
+
+    /**
+     * @param count how many commands were run on the bank (when it is restored)
      */
-    public static void resetBank() {
-        bank = null;
+    void setCommandCount(final long count) {
+        this.commandCount = count;
     }
 
     /**
@@ -90,7 +134,7 @@ public final class Bank extends ExchangeRate {
 
         // Freeze
         if (account.getBalance() <= account.getMinBalance()) {
-            Card card = account.getCard(cardNumber);
+            Card card = registry.getCard(cardNumber);
             if (card == null) {
                 throw new Exception("Card not found");
             }
@@ -102,19 +146,20 @@ public final class Bank extends ExchangeRate {
                 return;
             }
             Transaction transaction = new Transaction.TransactionBuilder()
+                    .setKind(TransactionKind.CARD_FROZEN)
                     .setDescription("You have reached the minimum amount of funds, "
                             + "the card will be frozen")
                     .setTimestamp(timestamp)
                     .build();
 
-            user.addTransaction(transaction);
-            account.addTransaction(transaction);
+            int row = user.addTransaction(transaction);
+            account.getTransactions().addRow(row);
             return;
         }
 
         // Warning
         if (account.getBalance() <= account.getMinBalance() + MIN_BALANCE_DIFFERENCE) {
-            Card card = account.getCard(cardNumber);
+            Card card = registry.getCard(cardNumber);
             if (card == null) {
                 throw new Exception("Card not found");
             }
@@ -126,12 +171,13 @@ public final class Bank extends ExchangeRate {
                 return;
             }
             Transaction transaction = new Transaction.TransactionBuilder()
+                    .setKind(TransactionKind.CARD_WARNING)
                     .setDescription("You are close to reaching the minimum amount of funds")
                     .setTimestamp(timestamp)
                     .build();
 
-            user.addTransaction(transaction);
-            account.addTransaction(transaction);
+            int row = user.addTransaction(transaction);
+            account.getTransactions().addRow(row);
         }
     }
 
@@ -185,6 +231,7 @@ public final class Bank extends ExchangeRate {
     public void setAlias(final String iban, final String alias) {
         Account account = getAccountWithIBAN(iban);
         if (account != null) {
+            registry.updateAlias(account, alias);
             account.setAlias(alias);
         }
     }
@@ -194,14 +241,7 @@ public final class Bank extends ExchangeRate {
      * @return the account with the given alias
      */
     public Account getAccountWithAlias(final String alias) {
-        for (User user : users) {
-            for (Account account : user.getAccounts()) {
-                if (account.getAlias() != null && account.getAlias().equals(alias)) {
-                    return account;
-                }
-            }
-        }
-        return null;
+        return registry.getAccountWithAlias(alias);
     }
 
     /**
@@ -209,14 +249,7 @@ public final class Bank extends ExchangeRate {
      * @return the user that has the account with the given IBAN
      */
     public User getUserWithAccount(final String iban) {
-        for (User user : users) {
-            for (Account account : user.getAccounts()) {
-                if (account.getIban().equals(iban)) {
-                    return user;
-                }
-            }
-        }
-        return null;
+        return registry.getUserWithAccount(iban);
     }
 
     /**
@@ -224,14 +257,7 @@ public final class Bank extends ExchangeRate {
      * @return the account with the given IBAN
      */
     public Account getAccountWithIBAN(final String iban) {
-        for (User user : users) {
-            for (Account account : user.getAccounts()) {
-                if (account.getIban().equals(iban)) {
-                    return account;
-                }
-            }
-        }
-        return null;
+        return registry.getAccountWithIBAN(iban);
     }
 
     /**
@@ -239,16 +265,15 @@ public final class Bank extends ExchangeRate {
      * @return the account that has the card with the given card number
      */
     public Account getAccountWithCard(final String cardNumber) {
-        for (User user : users) {
-            for (Account account : user.getAccounts()) {
-                for (Card card : account.getCards()) {
-                    if (card.getCardNumber().equals(cardNumber)) {
-                        return account;
-                    }
-                }
-            }
-        }
-        return null;
+        return registry.getAccountWithCard(cardNumber);
+    }
+
+    /**
+     * @param cardNumber the card number
+     * @return the card with the given card number or null if no account has it
+     */
+    public Card getCard(final String cardNumber) {
+        return registry.getCard(cardNumber);
     }
 
     /**
@@ -256,12 +281,7 @@ public final class Bank extends ExchangeRate {
      * @return the user with the given email
      */
     public User getUserWithEmail(final String email) {
-        for (User user : users) {
-            if (user.getEmail().equals(email)) {
-                return user;
-            }
-        }
-        return null;
+        return registry.getUserWithEmail(email);
     }
 
     /**
@@ -271,17 +291,31 @@ public final class Bank extends ExchangeRate {
     public void addAccountToUser(final String email, final Account account) {
         User user = getUserWithEmail(email);
         if (user != null) {
+            account.setCurrencyId(getCurrencyId(account.getCurrency()));
             user.addAccount(account);
 
             // add to the transaction list
             Transaction transaction = new Transaction.TransactionBuilder()
+                    .setKind(TransactionKind.ACCOUNT_CREATED)
                     .setDescription("New account created")
                     .setTimestamp(account.getTimestamp())
                     .build();
 
-            user.addTransaction(transaction);
-            account.addTransaction(transaction);
+            int row = user.addTransaction(transaction);
+            account.getTransactions().addRow(row);
+        }
+    }
+
+    /**
+     * Counts the transactions of the journal by kind, for sizing the indexes over them
+     * @return the number of transactions of each kind
+     */
+    public Map<TransactionKind, Integer> getTransactionCounts() {
+        Map<TransactionKind, Integer> counts = new EnumMap<>(TransactionKind.class);
+        for (TransactionKind kind : TransactionKind.values()) {
+            counts.put(kind, journal.count(kind));
         }
+        return counts;
     }
 
     /**
@@ -297,4 +331,18 @@ public final class Bank extends ExchangeRate {
         }
         return usersArray;
     }
+
+    /**
+     * @param generator the generator the users are written to (as an array)
+     * @throws IOException if the users cannot be written
+     */
+    public void writeUsersTo(final JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        if (users != null) {
+            for (User user : users) {
+                user.writeTo(generator);
+            }
+        }
+        generator.writeEndArray();
+    }
 }
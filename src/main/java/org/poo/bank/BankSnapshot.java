@@ -0,0 +1,323 @@
+package org.poo.bank;
+
+import org.poo.accounts.Account;
+import org.poo.accounts.ClassicAccount;
+import org.poo.accounts.SavingsAccount;
+import org.poo.cards.Card;
+import org.poo.cards.OneTimeCard;
+import org.poo.fileio.ExchangeInput;
+import org.poo.fileio.UserInput;
+import org.poo.transactions.TransactionJournal;
+import org.poo.transactions.TransactionKind;
+import org.poo.transactions.TransactionLog;
+import org.poo.transactions.TransactionView;
+import org.poo.utils.IdGenerator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Binary snapshot of the whole state of a bank: the number of commands run on it, the
+ * exchange rates, the transaction journal, the users with their accounts, cards, aliases and
+ * histories, and the state of the IBAN and card number generators. Loading a snapshot gives
+ * the same bank as replaying the commands that built it, without running them again (the
+ * indexes and the spendings of the accounts are rebuilt from the restored parts).
+ */
+public final class BankSnapshot {
+    private static final int MAGIC = 0x504F4F53;
+    private static final int VERSION = 6;
+
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    private static final byte CLASSIC_CARD = 0;
+    private static final byte ONE_TIME_CARD = 1;
+
+    private BankSnapshot() {
+    }
+
+    /**
+     * @param bank the bank to be saved
+     * @param file the snapshot file (replaced if it exists)
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void write(final Bank bank, final Path file) throws IOException {
+        // written next to the file and moved over it once synced, so a crash never leaves
+        // a snapshot that is only partly written
+        Path temporary = file.resolveSibling(file.getFileName() + TEMPORARY_EXTENSION);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(bank, Channels.newOutputStream(channel));
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param bank the bank to be saved
+     * @param output where the snapshot is written (left open)
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void write(final Bank bank, final OutputStream output) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeLong(bank.getCommandCount());
+
+        writeRates(data, bank.getInitialRates());
+        writeRates(data, bank.getAddedRates());
+        bank.getJournal().writeTo(data);
+
+        data.writeInt(bank.getUsers().size());
+        for (User user : bank.getUsers()) {
+            UserInput userInfo = user.getUserInfo();
+            writeNullable(data, userInfo.getFirstName());
+            writeNullable(data, userInfo.getLastName());
+            writeNullable(data, userInfo.getEmail());
+            writeNullable(data, userInfo.getBirthDate());
+            writeNullable(data, userInfo.getOccupation());
+        }
+        for (User user : bank.getUsers()) {
+            writeLog(data, user.getTransactions());
+            data.writeInt(user.getAccounts().size());
+            for (Account account : user.getAccounts()) {
+                writeAccount(data, account);
+            }
+        }
+
+        byte[] generators = bank.getIdGenerator().saveState();
+        data.writeInt(generators.length);
+        data.write(generators);
+        data.flush();
+    }
+
+    /**
+     * @param file the snapshot file
+     * @param journal an empty journal, where the transactions of the bank are restored
+     * @return the restored bank
+     * @throws IOException if the snapshot cannot be read
+     */
+    public static Bank read(final Path file, final TransactionJournal journal)
+            throws IOException {
+        return read(file, journal, RateTable.matrix());
+    }
+
+    /**
+     * @param file the snapshot file
+     * @param journal an empty journal, where the transactions of the bank are restored
+     * @param rateTable an empty table, where the exchange rates of the bank are restored
+     * @return the restored bank
+     * @throws IOException if the snapshot cannot be read
+     */
+    public static Bank read(final Path file, final TransactionJournal journal,
+                            final RateTable rateTable) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            return read(input, journal, rateTable);
+        }
+    }
+
+    /**
+     * @param input where the snapshot is read from (left open)
+     * @param journal an empty journal, where the transactions of the bank are restored
+     * @return the restored bank
+     * @throws IOException if the snapshot cannot be read
+     */
+    public static Bank read(final InputStream input, final TransactionJournal journal)
+            throws IOException {
+        return read(input, journal, RateTable.matrix());
+    }
+
+    /**
+     * @param input where the snapshot is read from (left open)
+     * @param journal an empty journal, where the transactions of the bank are restored
+     * @param rateTable an empty table, where the exchange rates of the bank are restored
+     * @return the restored bank
+     * @throws IOException if the snapshot cannot be read
+     */
+    public static Bank read(final InputStream input, final TransactionJournal journal,
+                            final RateTable rateTable) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(input));
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Not a bank snapshot");
+        }
+        long commandCount = data.readLong();
+
+        ExchangeInput[] initialRates = readRates(data);
+        ExchangeInput[] addedRates = readRates(data);
+        journal.readFrom(data);
+
+        UserInput[] userInputs = new UserInput[data.readInt()];
+        for (int i = 0; i < userInputs.length; i++) {
+            UserInput userInput = new UserInput();
+            userInput.setFirstName(readNullable(data));
+            userInput.setLastName(readNullable(data));
+            userInput.setEmail(readNullable(data));
+            userInput.setBirthDate(readNullable(data));
+            userInput.setOccupation(readNullable(data));
+            userInputs[i] = userInput;
+        }
+
+        Bank bank = new Bank(userInputs, initialRates, journal, new IdGenerator(), rateTable);
+        bank.setCommandCount(commandCount);
+        for (ExchangeInput rate : addedRates) {
+            bank.addExchangeRate(rate.getFrom(), rate.getTo(), rate.getRate());
+        }
+
+        for (User user : bank.getUsers()) {
+            readLog(data, user.getTransactions());
+            int accounts = data.readInt();
+            for (int i = 0; i < accounts; i++) {
+                readAccount(data, bank, user);
+            }
+        }
+
+        byte[] generators = new byte[data.readInt()];
+        data.readFully(generators);
+        bank.getIdGenerator().restoreState(generators);
+        return bank;
+    }
+
+    private static void writeAccount(final DataOutput data, final Account account)
+            throws IOException {
+        writeNullable(data, account.getType());
+        data.writeBoolean(account.hasInterest());
+        data.writeDouble(account.hasInterest()
+                ? ((SavingsAccount) account).getInterestRate() : 0);
+        writeNullable(data, account.getIban());
+        writeNullable(data, account.getCurrency());
+        data.writeDouble(account.getBalance());
+        data.writeInt(account.getTimestamp());
+        writeNullable(data, account.getAlias());
+        data.writeDouble(account.getMinBalance());
+
+        data.writeInt(account.getCards().size());
+        for (Card card : account.getCards()) {
+            data.writeByte(card instanceof OneTimeCard ? ONE_TIME_CARD : CLASSIC_CARD);
+            writeNullable(data, card.getCardNumber());
+            data.writeBoolean(card.isStatus());
+            data.writeBoolean(card.isFrozen());
+            data.writeBoolean(card.isWarning());
+            data.writeDouble(card.getAmount());
+            writeNullable(data, card.getCurrency());
+            data.writeBoolean(card instanceof OneTimeCard oneTimeCard && oneTimeCard.isUsed());
+        }
+
+        writeLog(data, account.getTransactions());
+    }
+
+    private static void readAccount(final DataInput data, final Bank bank, final User user)
+            throws IOException {
+        String type = readNullable(data);
+        boolean savings = data.readBoolean();
+        double interestRate = data.readDouble();
+        String iban = readNullable(data);
+        String currency = readNullable(data);
+        double balance = data.readDouble();
+        int timestamp = data.readInt();
+
+        Account account;
+        if (savings) {
+            account = new SavingsAccount(iban, currency, type, timestamp, interestRate);
+        } else {
+            account = new ClassicAccount(iban, currency, type, timestamp);
+        }
+        account.setBalance(balance);
+        account.setCurrencyId(bank.getCurrencyId(currency));
+        account.setAlias(readNullable(data));
+        account.setMinBalance(data.readDouble());
+
+        int cards = data.readInt();
+        for (int i = 0; i < cards; i++) {
+            byte cardType = data.readByte();
+            String cardNumber = readNullable(data);
+            Card card = cardType == ONE_TIME_CARD ? new OneTimeCard(cardNumber)
+                    : new Card(cardNumber);
+            card.setStatus(data.readBoolean());
+            card.setFrozen(data.readBoolean());
+            card.setWarning(data.readBoolean());
+            card.setAmount(data.readDouble());
+            card.setCurrency(readNullable(data));
+            boolean used = data.readBoolean();
+            if (card instanceof OneTimeCard oneTimeCard) {
+                oneTimeCard.setUsed(used);
+            }
+            account.getCards().add(card);
+        }
+
+        // registers the account, its alias and its cards, and gives it its history
+        user.addAccount(account);
+        TransactionLog transactions = account.getTransactions();
+        readLog(data, transactions);
+        for (TransactionView transaction : transactions) {
+            if (transaction.getKind() == TransactionKind.CARD_PAYMENT) {
+                account.addSpending(transaction.getCommerciant(), transaction.getTimestamp(),
+                        transaction.getAmount());
+            }
+        }
+    }
+
+    private static void writeLog(final DataOutput data, final TransactionLog log)
+            throws IOException {
+        data.writeInt(log.size());
+        for (int i = 0; i < log.size(); i++) {
+            data.writeInt(log.getRow(i));
+        }
+    }
+
+    private static void readLog(final DataInput data, final TransactionLog log)
+            throws IOException {
+        int size = data.readInt();
+        for (int i = 0; i < size; i++) {
+            log.addRow(data.readInt());
+        }
+    }
+
+    private static void writeRates(final DataOutput data, final List<ExchangeInput> rates)
+            throws IOException {
+        data.writeInt(rates.size());
+        for (ExchangeInput rate : rates) {
+            writeNullable(data, rate.getFrom());
+            writeNullable(data, rate.getTo());
+            data.writeDouble(rate.getRate());
+            data.writeInt(rate.getTimestamp());
+        }
+    }
+
+    private static ExchangeInput[] readRates(final DataInput data) throws IOException {
+        ExchangeInput[] rates = new ExchangeInput[data.readInt()];
+        for (int i = 0; i < rates.length; i++) {
+            rates[i] = new ExchangeInput();
+            rates[i].setFrom(readNullable(data));
+            rates[i].setTo(readNullable(data));
+            rates[i].setRate(data.readDouble());
+            rates[i].setTimestamp(data.readInt());
+        }
+        return rates;
+    }
+
+    private static void writeNullable(final DataOutput data, final String value)
+            throws IOException {
+        data.writeBoolean(value != null);
+        if (value != null) {
+            data.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(final DataInput data) throws IOException {
+        return data.readBoolean() ? data.readUTF() : null;
+    }
+}
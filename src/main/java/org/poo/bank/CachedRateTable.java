@@ -0,0 +1,155 @@
+package org.poo.bank;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finds the rate of a pair of currencies with a BFS the first time it is asked for and keeps
+ * the most recently used pairs (at most the given capacity), for large currency graphs where
+ * a matrix of all the pairs would be mostly unused. Pairs without a path are kept too.
+ * <p>
+ * The pairs are spread over segments, each an access-ordered map under its own lock that
+ * drops its least recently used pair when full, so threads looking up different pairs rarely
+ * wait for each other. A rate added or changed gives a new table (see RateTable.withRate)
+ * that starts with no pairs, so a pair is only ever kept by the tables whose graph it was
+ * found in; the tables of all the versions share the hit and miss counters.
+ */
+public final class CachedRateTable extends RateTable {
+    private static final int SEGMENTS = 16;
+    private static final int SEGMENT_INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final int capacity;
+    private final Segment[] segments;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    CachedRateTable(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity of the rate cache must be positive");
+        }
+        this.capacity = capacity;
+        this.segments = createSegments(capacity);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    private CachedRateTable(final CachedRateTable previous, final int argVersion) {
+        super(previous, argVersion);
+        this.capacity = previous.capacity;
+        this.segments = createSegments(capacity);
+        this.hits = previous.hits;
+        this.misses = previous.misses;
+    }
+
+    private static Segment[] createSegments(final int totalCapacity) {
+        // fewer segments for a small cache, so every segment keeps at least one pair and the
+        // capacities of the segments add up to the capacity of the cache
+        Segment[] created = new Segment[Integer.highestOneBit(
+                Math.min(SEGMENTS, totalCapacity))];
+        for (int i = 0; i < created.length; i++) {
+            created[i] = new Segment(totalCapacity / created.length
+                    + (i < totalCapacity % created.length ? 1 : 0));
+        }
+        return created;
+    }
+
+    @Override
+    RateTable copy(final int argVersion) {
+        return new CachedRateTable(this, argVersion);
+    }
+
+    @Override
+    void currencyAdded(final int id) {
+        // a new currency has no rates, no pair with it can be cached yet
+    }
+
+    @Override
+    void ratesReset() {
+        // the rates are given before the table is published, nothing is cached yet
+    }
+
+    @Override
+    void rateAdded(final int fromId, final int toId, final double rate) {
+        // the copy the rate is added to starts with no pairs
+    }
+
+    @Override
+    double getRate(final int fromId, final int toId) {
+        if (fromId == toId) {
+            return 1.0;
+        }
+
+        long pair = (long) fromId << Integer.SIZE | toId;
+        Segment segment = segments[Long.hashCode(pair) & (segments.length - 1)];
+        Double cached;
+        synchronized (segment) {
+            cached = segment.get(pair);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        double rate = resolve(fromId, toId);
+        synchronized (segment) {
+            segment.put(pair, rate);
+        }
+        return rate;
+    }
+
+    /**
+     * @return how many lookups found their pair in the cache, in all the versions of the table
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return how many lookups had to search the graph, in all the versions of the table
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return how many pairs are kept at most
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return how many pairs are kept now
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The pairs of one segment, from the least to the most recently used
+     */
+    private static final class Segment extends LinkedHashMap<Long, Double> {
+        private static final long serialVersionUID = 1L;
+
+        private final int segmentCapacity;
+
+        Segment(final int segmentCapacity) {
+            super(SEGMENT_INITIAL_CAPACITY, LOAD_FACTOR, true);
+            this.segmentCapacity = segmentCapacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, Double> eldest) {
+            return size() > segmentCapacity;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package org.poo.bank;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.Getter;
+import org.poo.fileio.CommandInput;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, write-ahead log of the commands run on a bank. The commands are appended
+ * before they are executed and written to the disk in batches (group commit): a batch costs
+ * a single sync and none of its commands runs before that sync. After a crash, the commands
+ * logged after the last snapshot are replayed over it, see {@link InitBank#recover}.
+ * <p>
+ * The file starts with a magic number and a version, followed by one record per command:
+ * the length of the command, its sequence number (how many commands the bank had run before
+ * it), the command as JSON and a CRC32 of the sequence number and the JSON. A record cut
+ * short by a crash fails its length or CRC check and is dropped when the log is opened.
+ */
+public final class CommandLog implements Closeable {
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    private static final int MAGIC = 0x504F4F57;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int RECORD_OVERHEAD = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final FileChannel channel;
+    @Getter
+    private final int batchSize;
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+    private final ByteArrayOutputStream pending;
+    private final DataOutputStream pendingData;
+    private final CRC32 checksum;
+    private int pendingCount;
+    @Getter
+    private long syncCount;
+
+    private CommandLog(final FileChannel channel, final int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be positive");
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        this.channel = channel;
+        this.batchSize = batchSize;
+        this.writer = mapper.writerFor(CommandInput.class);
+        this.reader = mapper.readerFor(CommandInput.class);
+        this.pending = new ByteArrayOutputStream();
+        this.pendingData = new DataOutputStream(pending);
+        this.checksum = new CRC32();
+    }
+
+    /**
+     * @param file the log file (emptied if it exists)
+     * @param batchSize how many commands are synced at once
+     * @return an empty log
+     * @throws IOException if the file cannot be created
+     */
+    public static CommandLog create(final Path file, final int batchSize) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        CommandLog log = new CommandLog(channel, batchSize);
+        log.reset();
+        return log;
+    }
+
+    /**
+     * Opens the log left by a previous run (or creates it), dropping the record that a crash
+     * may have cut short at its end; new commands are appended after the ones it has
+     * @param file the log file
+     * @param batchSize how many commands are synced at once
+     * @return the log
+     * @throws IOException if the file cannot be read or is not a command log
+     */
+    public static CommandLog open(final Path file, final int batchSize) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER_SIZE) {
+            return create(file, batchSize);
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        CommandLog log = new CommandLog(channel, batchSize);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a command log: " + file);
+            }
+            long end = log.readRecords(null);
+            channel.truncate(end);
+            channel.position(end);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return log;
+    }
+
+    /**
+     * Adds a command to the current batch; it is written only by {@link #commit()}
+     * @param sequence the sequence number of the command
+     * @param commandInput the command
+     * @throws IOException if the command cannot be serialized
+     */
+    public void append(final long sequence, final CommandInput commandInput)
+            throws IOException {
+        byte[] json = writer.writeValueAsBytes(commandInput);
+        pendingData.writeInt(json.length);
+        pendingData.writeLong(sequence);
+        pendingData.write(json);
+        pendingData.writeInt(checksum(sequence, json));
+        pendingCount++;
+    }
+
+    /**
+     * @return true if the current batch should be committed before more commands are added
+     */
+    public boolean isBatchFull() {
+        return pendingCount >= batchSize;
+    }
+
+    /**
+     * Writes the current batch and syncs it to the disk, once for all of its commands
+     * @throws IOException if the batch cannot be written
+     */
+    public void commit() throws IOException {
+        if (pendingCount == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        syncCount++;
+        pending.reset();
+        pendingCount = 0;
+    }
+
+    /**
+     * Runs the committed commands from a sequence number on, in order
+     * @param fromSequence the sequence number of the first command to be replayed (the
+     * commands before it are already part of the bank)
+     * @param consumer what runs the commands
+     * @return how many commands were replayed
+     * @throws IOException if the log cannot be read or it does not continue from the given
+     * sequence number
+     */
+    public long replay(final long fromSequence, final Consumer<CommandInput> consumer)
+            throws IOException {
+        long[] next = {fromSequence};
+        long end = readRecords((sequence, json) -> {
+            if (sequence < fromSequence) {
+                // already part of the snapshot
+                return;
+            }
+            if (sequence != next[0]) {
+                throw new IOException("The command log does not continue from command "
+                        + next[0]);
+            }
+            consumer.accept(reader.readValue(json));
+            next[0]++;
+        });
+        channel.position(end);
+        return next[0] - fromSequence;
+    }
+
+    /**
+     * Empties the log (when a snapshot holds all of its commands); the commands of the
+     * current batch are dropped
+     * @throws IOException if the log cannot be truncated
+     */
+    public void reset() throws IOException {
+        pending.reset();
+        pendingCount = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        channel.truncate(0);
+        channel.write(header, 0);
+        channel.position(HEADER_SIZE);
+        channel.force(true);
+    }
+
+    /**
+     * Closes the log; the commands of a batch that was not committed are dropped, as they
+     * were not executed either
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads the records from the start of the log up to the first one that is incomplete or
+     * fails its checksum
+     * @param visitor what is done with every record (nothing, if null)
+     * @return the position right after the last good record
+     */
+    private long readRecords(final RecordVisitor visitor) throws IOException {
+        long size = channel.size();
+        long position = HEADER_SIZE;
+        channel.position(position);
+        DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel)));
+
+        while (size - position >= RECORD_OVERHEAD) {
+            int length;
+            long sequence;
+            byte[] json;
+            try {
+                length = input.readInt();
+                if (length < 0 || length > size - position - RECORD_OVERHEAD) {
+                    break;
+                }
+                sequence = input.readLong();
+                json = new byte[length];
+                input.readFully(json);
+                if (input.readInt() != checksum(sequence, json)) {
+                    break;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+            if (visitor != null) {
+                visitor.visit(sequence, json);
+            }
+            position += RECORD_OVERHEAD + length;
+        }
+        return position;
+    }
+
+    private int checksum(final long sequence, final byte[] json) {
+        checksum.reset();
+        checksum.update(ByteBuffer.allocate(Long.BYTES).putLong(0, sequence).array());
+        checksum.update(json);
+        return (int) checksum.getValue();
+    }
+
+    private interface RecordVisitor {
+        void visit(long sequence, byte[] json) throws IOException;
+    }
+}
@@ -0,0 +1,186 @@
+package org.poo.bank;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.poo.accounts.Account;
+import org.poo.cards.OneTimeCard;
+import org.poo.commands.Command;
+import org.poo.commands.CommandFactory;
+import org.poo.fileio.CommandInput;
+import org.poo.output.BufferedSink;
+import org.poo.output.OutputSink;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs commands in parallel, partitioned by the user whose state they read and change.
+ * <p>
+ * Most commands touch a single account, so a single user (its accounts, cards and the
+ * histories of both): addFunds, payOnline, checkCardStatus, setMinimumBalance,
+ * printTransactions, the reports and the interest commands. Such commands are gathered into
+ * a segment, split by user; the commands of a user run in their order on one thread, the
+ * users run at the same time. Every other command is a barrier: it touches several users
+ * (sendMoney, splitPayment, printUsers), changes the indexes of the bank (addAccount,
+ * deleteAccount, deleteCard, setAlias) or draws from its IBAN and card number generator,
+ * whose order decides the numbers (addAccount, createCard, createOneTimeCard, payOnline with
+ * a one-time card), so it waits for the segment before it and runs alone.
+ * <p>
+ * The results of a segment are held per command and written in the order of the commands,
+ * so the output is the same as when the commands run one after the other.
+ */
+final class CommandScheduler {
+    // the most commands held (with their results) before a segment is run
+    private static final int SEGMENT_LIMIT = 1024;
+    // the partition of the commands that only read (an unknown user or account)
+    private static final Object NO_USER = new Object();
+
+    private final Bank bank;
+    private final CommandFactory commandFactory;
+    private final ObjectMapper mapper;
+    private final OutputSink output;
+    private final ExecutorService executor;
+
+    private final List<Command> commands;
+    private final List<Object> partitions;
+
+    /**
+     * @param bank the bank the commands run on
+     * @param commandFactory the factory of the commands
+     * @param mapper the object mapper of the results
+     * @param output where the results are written, in the order of the commands
+     * @param executor the threads the users of a segment run on
+     */
+    CommandScheduler(final Bank bank, final CommandFactory commandFactory,
+                     final ObjectMapper mapper, final OutputSink output,
+                     final ExecutorService executor) {
+        this.bank = bank;
+        this.commandFactory = commandFactory;
+        this.mapper = mapper;
+        this.output = output;
+        this.executor = executor;
+        this.commands = new ArrayList<>();
+        this.partitions = new ArrayList<>();
+    }
+
+    /**
+     * Adds a command to the current segment or, for a barrier, runs the segment and then
+     * the command. The command is counted on the bank right away, so the count of the bank
+     * never lags behind the commands given to the scheduler.
+     * @param commandInput the command
+     */
+    void submit(final CommandInput commandInput) {
+        Command command = commandFactory.createCommand(commandInput);
+        Object partition = command == null ? NO_USER : partitionOf(commandInput);
+        bank.countCommand();
+        if (partition == null) {
+            flush();
+            command.execute(bank, output);
+            return;
+        }
+
+        commands.add(command);
+        partitions.add(partition);
+        if (commands.size() == SEGMENT_LIMIT) {
+            flush();
+        }
+    }
+
+    /**
+     * Runs the commands of the current segment and writes their results
+     */
+    void flush() {
+        if (commands.isEmpty()) {
+            return;
+        }
+
+        Map<Object, List<Integer>> users = new IdentityHashMap<>();
+        for (int i = 0; i < commands.size(); i++) {
+            users.computeIfAbsent(partitions.get(i), partition -> new ArrayList<>()).add(i);
+        }
+
+        if (users.size() == 1) {
+            for (Command command : commands) {
+                execute(command, output);
+            }
+        } else {
+            runInParallel(users.values());
+        }
+
+        commands.clear();
+        partitions.clear();
+    }
+
+    private void runInParallel(final Iterable<List<Integer>> users) {
+        BufferedSink[] results = new BufferedSink[commands.size()];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (List<Integer> user : users) {
+            tasks.add(() -> {
+                for (int i : user) {
+                    results[i] = new BufferedSink(mapper);
+                    execute(commands.get(i), results[i]);
+                }
+                return null;
+            });
+        }
+
+        bank.getJournal().setConcurrent(true);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the commands", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            bank.getJournal().setConcurrent(false);
+        }
+
+        for (BufferedSink result : results) {
+            result.writeTo(output);
+        }
+    }
+
+    private void execute(final Command command, final OutputSink sink) {
+        if (command != null) {
+            command.execute(bank, sink);
+        }
+    }
+
+    /**
+     * @return the user the command reads and changes, NO_USER if it only reads the indexes
+     * of the bank (its user or account does not exist) or null if it is a barrier
+     */
+    private Object partitionOf(final CommandInput commandInput) {
+        return switch (commandInput.getCommand()) {
+            case "addFunds", "setMinimumBalance", "report", "spendingsReport",
+                 "changeInterestRate", "addInterest" ->
+                    userOrNone(bank.getUserWithAccount(commandInput.getAccount()));
+            case "printTransactions" ->
+                    userOrNone(bank.getUserWithEmail(commandInput.getEmail()));
+            case "checkCardStatus" -> {
+                Account account = bank.getAccountWithCard(commandInput.getCardNumber());
+                yield account == null ? NO_USER
+                        : userOrNone(bank.getUserWithAccount(account.getIban()));
+            }
+            case "payOnline" -> bank.getRegistry().getCard(commandInput.getCardNumber())
+                    instanceof OneTimeCard ? null
+                    : userOrNone(bank.getUserWithEmail(commandInput.getEmail()));
+            default -> null;
+        };
+    }
+
+    private static Object userOrNone(final User user) {
+        return user == null ? NO_USER : user;
+    }
+}
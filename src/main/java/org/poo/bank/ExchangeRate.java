@@ -2,79 +2,109 @@ package org.poo.bank;
 
 import org.poo.fileio.ExchangeInput;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Queue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ExchangeRate {
-    private final Map<String, Map<String, Double>> exchangeRatesGraph;
+    // the currency graph and the way its pairs are resolved, replaced by a new table whenever
+    // a rate is added (see RateTable), so it is read without a lock
+    private final AtomicReference<RateTable> rateTable;
+    // taken by the writers only, so two changes never start from the same table
+    private final Object updateLock;
+
+    // the rates given at creation and the ones added after, in order (for snapshots)
+    private final List<ExchangeInput> initialRates;
+    private final List<ExchangeInput> addedRates;
 
     /**
      * @param exchangeRates the array of exchange rates between currencies
      */
     public ExchangeRate(final ExchangeInput[] exchangeRates) {
-        this.exchangeRatesGraph = new HashMap<>();
-        for (ExchangeInput exchangeRate : exchangeRates) {
-            String from = exchangeRate.getFrom();
-            String to = exchangeRate.getTo();
-            double rate = exchangeRate.getRate();
-
-            // add the connection "from -> to"
-            if (!this.exchangeRatesGraph.containsKey(from)) {
-                this.exchangeRatesGraph.put(from, new HashMap<>());
-            }
-            this.exchangeRatesGraph.get(from).put(to, rate);
+        this(exchangeRates, RateTable.matrix());
+    }
 
-            // add the inverse connection "to -> from"
-            if (!this.exchangeRatesGraph.containsKey(to)) {
-                this.exchangeRatesGraph.put(to, new HashMap<>());
-            }
-            this.exchangeRatesGraph.get(to).put(from, 1.0 / rate);
-        }
+    /**
+     * @param exchangeRates the array of exchange rates between currencies
+     * @param rateTable the (empty) table the rates are kept and resolved in
+     */
+    public ExchangeRate(final ExchangeInput[] exchangeRates, final RateTable rateTable) {
+        rateTable.addRates(exchangeRates);
+        this.rateTable = new AtomicReference<>(rateTable);
+        this.updateLock = new Object();
+        this.initialRates = List.of(exchangeRates);
+        this.addedRates = new ArrayList<>();
     }
 
     /**
+     * Adds (or changes) a rate: publishes a new table with the next version, the commands that
+     * already read the current one keep using it; how much of the resolved pairs is recomputed
+     * depends on the rate table
      * @param from the currency to convert from
      * @param to the currency to convert to
-     * @return the exchange rate between the two currencies
-     * @throws Exception if no path is found between the two currencies
+     * @param rate how many units of "to" one unit of "from" is worth
      */
-    public double getExchangeRate(final String from, final String to) throws Exception {
-        if (from.equals(to)) {
-            return 1.0;
+    public void addExchangeRate(final String from, final String to, final double rate) {
+        ExchangeInput added = new ExchangeInput();
+        added.setFrom(from);
+        added.setTo(to);
+        added.setRate(rate);
+
+        synchronized (updateLock) {
+            addedRates.add(added);
+            rateTable.set(rateTable.get().withRate(from, to, rate));
         }
+    }
 
-        // BFS for finding the path
-        Queue<String> queue = new LinkedList<>();
-        Map<String, Double> visited = new HashMap<>();
-        queue.add(from);
-        visited.put(from, 1.0);
+    /**
+     * @return the rates the bank was created with
+     */
+    public List<ExchangeInput> getInitialRates() {
+        return initialRates;
+    }
 
-        while (!queue.isEmpty()) {
-            String current = queue.poll();
-            double currentRate = visited.get(current);
+    /**
+     * @return the rates added with addExchangeRate, in the order they were added
+     */
+    public List<ExchangeInput> getAddedRates() {
+        synchronized (updateLock) {
+            return List.copyOf(addedRates);
+        }
+    }
 
-            if (exchangeRatesGraph.containsKey(current)) {
-                for (Map.Entry<String, Double> neighbor
-                        : exchangeRatesGraph.get(current).entrySet()) {
-                    String next = neighbor.getKey();
-                    double rate = neighbor.getValue();
+    /**
+     * @return the current table of the rates, which never changes: a command that converts
+     * several amounts reads it once, so all of them use the same rates (and version)
+     */
+    public RateTable getRateTable() {
+        return rateTable.get();
+    }
 
-                    if (!visited.containsKey(next)) {
-                        double newRate = currentRate * rate;
-                        visited.put(next, newRate);
+    /**
+     * @param from the currency to convert from
+     * @param to the currency to convert to
+     * @return the exchange rate between the two currencies
+     * @throws Exception if no path is found between the two currencies
+     */
+    public double getExchangeRate(final String from, final String to) throws Exception {
+        return rateTable.get().getExchangeRate(from, to);
+    }
 
-                        // if found the target currency
-                        if (next.equals(to)) {
-                            return newRate;
-                        }
+    /**
+     * @param currency the name of the currency
+     * @return the id of the currency or -1 if the bank has no rates for it (yet); a currency
+     * gets its id with its first rate and keeps it in every later table
+     */
+    public int getCurrencyId(final String currency) {
+        return rateTable.get().getCurrencyId(currency);
+    }
 
-                        queue.add(next);
-                    }
-                }
-            }
-        }
-        throw new Exception("No exchange rate path found between " + from + " and " + to);
+    /**
+     * @param fromId the id of the currency to convert from
+     * @param toId the id of the currency to convert to
+     * @return the exchange rate between the two currencies or NaN if there is no path
+     */
+    public double getExchangeRate(final int fromId, final int toId) {
+        return rateTable.get().getExchangeRate(fromId, toId);
     }
 }
@@ -1,58 +1,225 @@
 package org.poo.bank;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import lombok.Getter;
 import org.poo.commands.Command;
 import org.poo.commands.CommandFactory;
 import org.poo.fileio.CommandInput;
 import org.poo.fileio.ObjectInput;
+import org.poo.fileio.StreamingInputReader;
+import org.poo.output.OutputSink;
+import org.poo.transactions.TransactionJournal;
+import org.poo.utils.IdGenerator;
 
-import static org.poo.utils.Utils.resetRandom;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 public final class InitBank {
-    private final ObjectMapper mapper;
-    @Getter
-    private final ArrayNode outputArray;
+    private final OutputSink output;
     private final Bank bank;
+    private final ObjectMapper mapper;
     private final CommandFactory commandFactory;
+    // runs the commands in parallel, if an executor was given
+    private CommandScheduler scheduler;
+    private Path snapshotFile;
+    private CommandLog commandLog;
+    // the commands logged but not executed yet, waiting for their batch to be synced
+    private final List<CommandInput> batch;
+    // how many commands of the input were already run by recover
+    private long recovered;
+    // the sequence number of the next command given to run, counted here and not read from
+    // the bank, which only counts a command once it is handed over to be executed
+    private long nextSequence;
+
+    public InitBank(final ObjectInput input, final OutputSink output) {
+        this(input, output, new TransactionJournal());
+    }
+
+    /**
+     * @param input the users and the exchange rates of the bank
+     * @param output where the commands write their results
+     * @param journal where the transactions of the bank are kept
+     */
+    public InitBank(final ObjectInput input, final OutputSink output,
+                    final TransactionJournal journal) {
+        this(input, output, journal, RateTable.matrix());
+    }
 
-    public InitBank(final ObjectInput input) {
+    /**
+     * @param input the users and the exchange rates of the bank
+     * @param output where the commands write their results
+     * @param journal where the transactions of the bank are kept
+     * @param rateTable where the exchange rates of the bank are kept and resolved
+     */
+    public InitBank(final ObjectInput input, final OutputSink output,
+                    final TransactionJournal journal, final RateTable rateTable) {
+        this(new Bank(input.getUsers(), input.getExchangeRates(), journal, new IdGenerator(),
+                rateTable), output);
+    }
+
+    /**
+     * Runs the commands on a bank that already exists (for example one restored from a
+     * snapshot); the commands use the IBAN and card number generator of that bank
+     * @param bank the bank
+     * @param output where the commands write their results
+     */
+    public InitBank(final Bank bank, final OutputSink output) {
+        this.output = output;
+        this.bank = bank;
         this.mapper = new ObjectMapper();
-        this.outputArray = this.mapper.createArrayNode();
-        this.bank = Bank.getInstance(input.getUsers(), input.getExchangeRates());
-        this.commandFactory = new CommandFactory(mapper);
+        this.commandFactory = new CommandFactory(mapper, bank.getIdGenerator());
+        this.batch = new ArrayList<>();
+        this.nextSequence = bank.getCommandCount();
+    }
+
+    /**
+     * @return the bank the commands run on
+     */
+    public Bank getBank() {
+        return bank;
+    }
+
+    /**
+     * If set, the commands that read and change the state of a single user run on the
+     * executor, the commands of different users at the same time; the results are still
+     * written in the order of the commands (see {@link CommandScheduler})
+     * @param executor the threads the commands run on
+     */
+    public void setExecutor(final ExecutorService executor) {
+        this.scheduler = new CommandScheduler(bank, commandFactory, mapper, output, executor);
+    }
+
+    /**
+     * If set, the state of the bank is saved there at the end of the run
+     * @param file the snapshot file
+     */
+    public void setSnapshotFile(final Path file) {
+        this.snapshotFile = file;
+    }
+
+    /**
+     * If set, every command is appended to the log before it is executed; the snapshot file
+     * (if any) is the checkpoint of the log, which is emptied every time a snapshot is saved
+     * @param log the command log
+     */
+    public void setCommandLog(final CommandLog log) {
+        this.commandLog = log;
     }
 
     /**
+     * Replays the commands the log has after the state of the bank (the last snapshot, or
+     * the bank as created from the input), writing their results to the output. These are
+     * the first commands of the input that was being run when the log was left behind, so
+     * run skips as many commands as were replayed.
+     * @param log the log of the run that was interrupted
+     * @return how many commands were replayed
+     * @throws IOException if the log cannot be read
+     */
+    public long recover(final CommandLog log) throws IOException {
+        long start = bank.getCommandCount();
+        recovered = log.replay(start, this::processCommand);
+        nextSequence = start + recovered;
+        return recovered;
+    }
+
+    /**
+     * Executes a command right away, without logging it
      * @param commandInput the object with the whole input
-     * @param objectNode the object node to be filled with the command result
      */
-    public void processCommand(final CommandInput commandInput, final ObjectNode objectNode) {
+    public void processCommand(final CommandInput commandInput) {
         Command command = commandFactory.createCommand(commandInput);
         if (command != null) {
-            command.execute(bank, objectNode);
+            command.execute(bank, output);
         }
+        bank.countCommand();
     }
 
     /**
      * Processes all commands from the input
      * @param input the input object containing all commands
+     * @throws IOException if the command log or the snapshot cannot be written
      */
-    public void run(final ObjectInput input) {
-        resetRandom();
+    public void run(final ObjectInput input) throws IOException {
         if (input.getCommands() != null) {
             for (int i = 0; i < input.getCommands().length; i++) {
-                ObjectNode objectNode = this.mapper.createObjectNode();
+                submitCommand(input.getCommands()[i]);
+            }
+        }
+        finishRun();
+    }
 
-                processCommand(input.getCommands()[i], objectNode);
+    /**
+     * Processes the commands one by one as they are read from the input, so the whole
+     * command array is never held in memory
+     * @param reader the reader, positioned at the start of the commands
+     * @throws IOException if a command cannot be read or the command log or the snapshot
+     * cannot be written
+     */
+    public void run(final StreamingInputReader reader) throws IOException {
+        for (CommandInput commandInput = reader.nextCommand(); commandInput != null;
+             commandInput = reader.nextCommand()) {
+            submitCommand(commandInput);
+        }
+        finishRun();
+    }
+
+    /**
+     * Without a log the command is executed right away; with one, it is logged and executed
+     * together with its batch, once the batch is synced
+     */
+    private void submitCommand(final CommandInput commandInput) throws IOException {
+        if (recovered > 0) {
+            recovered--;
+            return;
+        }
+        long sequence = nextSequence++;
+        if (commandLog == null) {
+            executeCommand(commandInput);
+            return;
+        }
+
+        commandLog.append(sequence, commandInput);
+        batch.add(commandInput);
+        if (commandLog.isBatchFull()) {
+            executeBatch();
+        }
+    }
+
+    private void executeBatch() throws IOException {
+        if (commandLog == null) {
+            return;
+        }
+        commandLog.commit();
+        for (CommandInput commandInput : batch) {
+            executeCommand(commandInput);
+        }
+        batch.clear();
+    }
+
+    private void executeCommand(final CommandInput commandInput) {
+        if (scheduler == null) {
+            processCommand(commandInput);
+        } else {
+            scheduler.submit(commandInput);
+        }
+    }
+
+    private void finishRun() throws IOException {
+        executeBatch();
+        if (scheduler != null) {
+            scheduler.flush();
+        }
+        saveSnapshot();
+    }
 
-                if (!objectNode.isEmpty()) {
-                    this.outputArray.add(objectNode);
-                }
+    private void saveSnapshot() throws IOException {
+        if (snapshotFile != null) {
+            BankSnapshot.write(bank, snapshotFile);
+            if (commandLog != null) {
+                commandLog.reset();
             }
         }
-        Bank.resetBank();
     }
 }
@@ -0,0 +1,107 @@
+package org.poo.bank;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the rate of every pair of currencies in a dense matrix, filled with one BFS per
+ * currency when the rates are given and again for the currencies connected to a rate that is
+ * added, so a lookup is a single array read and the rates of a graph are the same whatever
+ * the order its rates were given in. Every currency has its own row: a rate added once the
+ * bank runs gives a copy (see RateTable.withRate) that shares the rows of the previous table
+ * and only replaces the rows of the currencies connected to the rate.
+ */
+final class MatrixRateTable extends RateTable {
+    private static final int INITIAL_CAPACITY = 8;
+
+    // rows[from][to], NaN when there is no path between the two currencies; a row is never
+    // changed once the table is published and may be shorter than the number of currencies
+    // (the ones past its end are not connected to it)
+    private double[][] rows;
+
+    MatrixRateTable() {
+        this.rows = new double[INITIAL_CAPACITY][];
+    }
+
+    private MatrixRateTable(final MatrixRateTable previous, final int argVersion) {
+        super(previous, argVersion);
+        this.rows = previous.rows.clone();
+    }
+
+    @Override
+    RateTable copy(final int argVersion) {
+        return new MatrixRateTable(this, argVersion);
+    }
+
+    @Override
+    void currencyAdded(final int id) {
+        if (id == rows.length) {
+            rows = Arrays.copyOf(rows, rows.length * 2);
+        }
+        rows[id] = emptyRow(id + 1);
+        rows[id][id] = 1.0;
+    }
+
+    /**
+     * Closes the graph: one BFS per currency fills the rows of the matrix
+     */
+    @Override
+    void ratesReset() {
+        int[] all = new int[currencyCount()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        fillRows(all, all.length);
+    }
+
+    /**
+     * Recomputes the rows of the group of currencies connected to the rate (joining two
+     * groups if the rate links them), the other rows cannot change and stay shared with the
+     * previous table
+     */
+    @Override
+    void rateAdded(final int fromId, final int toId, final double rate) {
+        int[] via = pathsFrom(fromId, -1);
+        int[] members = new int[via.length];
+        int size = 0;
+        for (int i = 0; i < via.length; i++) {
+            if (via[i] != -1) {
+                members[size++] = i;
+            }
+        }
+        fillRows(members, size);
+    }
+
+    @Override
+    double getRate(final int fromId, final int toId) {
+        double[] row = rows[fromId];
+        return toId < row.length ? row[toId] : Double.NaN;
+    }
+
+    private static double[] emptyRow(final int length) {
+        double[] row = new double[length];
+        Arrays.fill(row, Double.NaN);
+        return row;
+    }
+
+    /**
+     * Replaces the rows of the given currencies, filled with one BFS over the graph from each
+     * (see RateTable.pathsFrom); a search gives the rates both ways of the pairs it is used for
+     * (see RateTable.searchedFrom), so every currency reached from one of the given ones must
+     * be among them
+     */
+    private void fillRows(final int[] sources, final int count) {
+        for (int i = 0; i < count; i++) {
+            rows[sources[i]] = emptyRow(currencyCount());
+        }
+        for (int i = 0; i < count; i++) {
+            int source = sources[i];
+            int[] via = pathsFrom(source, -1);
+            for (int to = 0; to < via.length; to++) {
+                if (via[to] != -1 && searchedFrom(source, to)) {
+                    rows[source][to] = rateOver(via, source, to);
+                    rows[to][source] = rateOver(via, to, source);
+                }
+            }
+        }
+    }
+}
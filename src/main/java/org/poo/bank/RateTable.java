@@ -0,0 +1,381 @@
+package org.poo.bank;
+
+import org.poo.fileio.ExchangeInput;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The currency graph of a bank and the way the rate between two of its currencies is found.
+ * Every currency gets a small id that never changes; the rates given are edges of the graph
+ * (with the inverse rate in the other direction) and the rate between two currencies is the
+ * product of the rates on the path with the fewest rates between them (see pathsFrom). A pair
+ * has one path, searched for from the currency whose name comes first, and the rates both
+ * ways go over it (see searchedFrom), so converting an amount there and back never gains more
+ * than the rounding of the products.
+ * <p>
+ * {@link #matrix()} resolves every pair up front into a dense matrix, the fastest for the few
+ * currencies of the usual inputs; {@link #cached(int)} resolves a pair the first time it is
+ * asked for and keeps a bounded number of them, for large graphs where only a few of the
+ * currencies are ever used.
+ * <p>
+ * A table is not changed once it is published (by ExchangeRate): a rate added after that gives
+ * a new table (see withRate), so a command reads all its rates from the same
+ * table without any lock, while the rates change. Every table has the version of its rates,
+ * the number of rates changed since the bank was created.
+ */
+public abstract class RateTable {
+    private final Map<String, Map<String, Double>> exchangeRatesGraph;
+    private final Map<String, Integer> currencyIds;
+    private final List<String> currencies;
+    private final int version;
+
+    RateTable() {
+        this.exchangeRatesGraph = new HashMap<>();
+        this.currencyIds = new HashMap<>();
+        this.currencies = new ArrayList<>();
+        this.version = 0;
+    }
+
+    /**
+     * A copy of the graph of the previous table; the rates of each currency are still shared
+     * with it and are copied before they are changed (see addRate)
+     * @param previous the table the graph is copied from
+     * @param argVersion the version of the rates of the new table
+     */
+    RateTable(final RateTable previous, final int argVersion) {
+        this.exchangeRatesGraph = new HashMap<>(previous.exchangeRatesGraph);
+        this.currencyIds = new HashMap<>(previous.currencyIds);
+        this.currencies = new ArrayList<>(previous.currencies);
+        this.version = argVersion;
+    }
+
+    /**
+     * @return a table that keeps the rates of all the pairs of currencies in a matrix
+     */
+    public static RateTable matrix() {
+        return new MatrixRateTable();
+    }
+
+    /**
+     * @param capacity how many pairs of currencies are kept at most
+     * @return a table that finds the rate of a pair when it is first needed and keeps the
+     * most recently used pairs
+     */
+    public static RateTable cached(final int capacity) {
+        return new CachedRateTable(capacity);
+    }
+
+    /**
+     * @param from the currency to convert from
+     * @param to the currency to convert to
+     * @param rate how many units of "to" one unit of "from" is worth
+     * @return a new table with the rate added (or changed) and the next version, this table
+     * is left as it is
+     */
+    final RateTable withRate(final String from, final String to, final double rate) {
+        RateTable next = copy(version + 1);
+        next.addRate(from, to, rate);
+        return next;
+    }
+
+    /**
+     * Gives the currency an id, if it does not have one yet
+     * @param currency the name of the currency
+     * @return the id of the currency
+     */
+    private int addCurrency(final String currency) {
+        Integer known = currencyIds.get(currency);
+        if (known != null) {
+            return known;
+        }
+
+        int id = currencies.size();
+        currencyIds.put(currency, id);
+        currencies.add(currency);
+        exchangeRatesGraph.put(currency, new HashMap<>());
+        currencyAdded(id);
+        return id;
+    }
+
+    /**
+     * Adds the rates a bank is created with, all of them before any pair is resolved
+     * @param exchangeRates the rates between currencies
+     */
+    final void addRates(final ExchangeInput[] exchangeRates) {
+        for (ExchangeInput exchangeRate : exchangeRates) {
+            addEdge(exchangeRate.getFrom(), exchangeRate.getTo(), exchangeRate.getRate());
+        }
+        ratesReset();
+    }
+
+    /**
+     * Adds (or changes) a rate in a copy of a published table, copying the rates of the two
+     * currencies first as the previous table still uses them
+     */
+    private void addRate(final String from, final String to, final double rate) {
+        addCurrency(from);
+        addCurrency(to);
+        exchangeRatesGraph.put(from, new HashMap<>(exchangeRatesGraph.get(from)));
+        exchangeRatesGraph.put(to, new HashMap<>(exchangeRatesGraph.get(to)));
+        addEdge(from, to, rate);
+        rateAdded(currencyIds.get(from), currencyIds.get(to), rate);
+    }
+
+    /**
+     * Adds the connection "from -> to" and the inverse connection "to -> from"
+     */
+    private void addEdge(final String from, final String to, final double rate) {
+        addCurrency(from);
+        addCurrency(to);
+        exchangeRatesGraph.get(from).put(to, rate);
+        exchangeRatesGraph.get(to).put(from, 1.0 / rate);
+    }
+
+    /**
+     * @return the version of the rates of the table: 0 for the rates the bank was created
+     * with, increased by one for every rate added or changed after
+     */
+    public final int getVersion() {
+        return version;
+    }
+
+    /**
+     * @param from the currency to convert from
+     * @param to the currency to convert to
+     * @return the exchange rate between the two currencies
+     * @throws Exception if no path is found between the two currencies
+     */
+    public final double getExchangeRate(final String from, final String to) throws Exception {
+        if (from.equals(to)) {
+            return 1.0;
+        }
+
+        int fromId = getCurrencyId(from);
+        int toId = getCurrencyId(to);
+        if (fromId != -1 && toId != -1) {
+            double rate = getRate(fromId, toId);
+            if (!Double.isNaN(rate)) {
+                return rate;
+            }
+        }
+        throw new Exception("No exchange rate path found between " + from + " and " + to);
+    }
+
+    /**
+     * @param from the currency to convert from
+     * @param to the currency to convert to
+     * @param toId the id of "to" as it was looked up before (see ExchangeRate.getCurrencyId,
+     * ids never change once given), or -1 if it had none then and is looked up by name
+     * @return the exchange rate between the two currencies
+     * @throws Exception if no path is found between the two currencies
+     */
+    public final double getExchangeRate(final String from, final String to, final int toId)
+            throws Exception {
+        if (toId == -1) {
+            return getExchangeRate(from, to);
+        }
+        int fromId = getCurrencyId(from);
+        double rate = fromId == -1 ? Double.NaN : getExchangeRate(fromId, toId);
+        if (Double.isNaN(rate)) {
+            throw new Exception("No exchange rate path found between " + from + " and " + to);
+        }
+        return rate;
+    }
+
+    /**
+     * @param fromId the id of the currency to convert from
+     * @param toId the id of the currency to convert to
+     * @return the exchange rate between the two currencies or NaN if there is no path (or one
+     * of the currencies got its id after this table was published)
+     */
+    public final double getExchangeRate(final int fromId, final int toId) {
+        if (fromId >= currencyCount() || toId >= currencyCount()) {
+            return Double.NaN;
+        }
+        return getRate(fromId, toId);
+    }
+
+    /**
+     * @param currency the name of the currency
+     * @return the id of the currency or -1 if it has none
+     */
+    public final int getCurrencyId(final String currency) {
+        Integer id = currencyIds.get(currency);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return the number of currencies with an id
+     */
+    final int currencyCount() {
+        return currencies.size();
+    }
+
+    /**
+     * @param fromId the id of the currency to convert from
+     * @param toId the id of the currency to convert to
+     * @return true if the path of the pair is searched for from the first currency, false if
+     * from the second one: the path of a pair is always searched for from the currency whose
+     * name comes first and the rates both ways follow it, as two paths with as few rates and
+     * as good a rate may exist and the searches from the two ends could each pick another one
+     */
+    final boolean searchedFrom(final int fromId, final int toId) {
+        return currencies.get(fromId).compareTo(currencies.get(toId)) <= 0;
+    }
+
+    /**
+     * @param fromId the id of the currency to convert from
+     * @param toId the id of the currency to convert to
+     * @return the rate of the pair over the path searched for from the currency whose name
+     * comes first (see searchedFrom and rateOver), NaN if there is no path
+     */
+    final double resolve(final int fromId, final int toId) {
+        int[] via = searchedFrom(fromId, toId) ? pathsFrom(fromId, toId) : pathsFrom(toId, fromId);
+        return rateOver(via, fromId, toId);
+    }
+
+    /**
+     * The paths from one currency to the others, each with the fewest rates; among the paths
+     * with as few rates, the one with the best rate (the largest sum of the logarithms of its
+     * rates) is used, and among those the one whose last step comes from the currency with the
+     * first name, so the paths only depend on the graph and not on the order its rates were
+     * given in or its maps are walked in.
+     * @param source the id of the currency the paths start at
+     * @param target the id of the currency the search stops at (once all the paths to it with
+     * as few rates are compared), or -1 to reach all of them
+     * @return for every currency reached the id of the one before it on its path (the source
+     * for itself), -1 for the ones not reached
+     */
+    final int[] pathsFrom(final int source, final int target) {
+        int count = currencies.size();
+        int[] via = new int[count];
+        Arrays.fill(via, -1);
+        via[source] = source;
+        if (source == target) {
+            return via;
+        }
+
+        double[] logRates = new double[count];
+        int[] hops = new int[count];
+        Arrays.fill(hops, -1);
+        hops[source] = 0;
+
+        // one level of the BFS at a time, so all the paths to a currency with as few rates
+        // are compared before its own rates are followed
+        int[] level = {source};
+        int levelSize = 1;
+        for (int depth = 1; levelSize > 0; depth++) {
+            int[] nextLevel = new int[count];
+            int nextSize = 0;
+            for (int i = 0; i < levelSize; i++) {
+                int current = level[i];
+                for (Map.Entry<String, Double> neighbor
+                        : exchangeRatesGraph.get(currencies.get(current)).entrySet()) {
+                    int next = currencyIds.get(neighbor.getKey());
+                    double logRate = logRates[current] + Math.log(neighbor.getValue());
+                    // followed unless the currency was reached with fewer rates or over a
+                    // better path with as few rates
+                    if (hops[next] == -1) {
+                        hops[next] = depth;
+                        nextLevel[nextSize++] = next;
+                    } else if (hops[next] != depth || logRate < logRates[next]
+                            || logRate == logRates[next] && currencies.get(current)
+                            .compareTo(currencies.get(via[next])) > 0) {
+                        continue;
+                    }
+                    logRates[next] = logRate;
+                    via[next] = current;
+                }
+            }
+            if (target != -1 && hops[target] != -1) {
+                return via;
+            }
+            level = nextLevel;
+            levelSize = nextSize;
+        }
+        return via;
+    }
+
+    /**
+     * The rate of a pair over a path found by pathsFrom, from either of its currencies: the
+     * product of the rates of the path in the order of the path, from the currency converted
+     * from, so its relative error is at most one rounding per rate and the rate the other way
+     * goes over the same currencies
+     * @param via the paths from fromId or from toId, as given by pathsFrom
+     * @param fromId the id of the currency to convert from
+     * @param toId the id of the currency to convert to
+     * @return the rate of the pair or NaN if the paths do not reach the other currency
+     */
+    final double rateOver(final int[] via, final int fromId, final int toId) {
+        if (fromId == toId) {
+            return 1.0;
+        }
+        if (via[fromId] == -1 || via[toId] == -1) {
+            return Double.NaN;
+        }
+
+        double rate = 1.0;
+        if (via[toId] == toId) {
+            // the paths start at toId, the one of fromId is walked as it is
+            for (int at = fromId; at != toId; at = via[at]) {
+                rate *= edge(at, via[at]);
+            }
+            return rate;
+        }
+
+        // the paths start at fromId, the one of toId is walked back first
+        int[] path = new int[via.length];
+        int length = 0;
+        for (int at = toId; at != fromId; at = via[at]) {
+            path[length++] = at;
+        }
+        int previous = fromId;
+        for (int i = length - 1; i >= 0; i--) {
+            rate *= edge(previous, path[i]);
+            previous = path[i];
+        }
+        return rate;
+    }
+
+    private double edge(final int fromId, final int toId) {
+        return exchangeRatesGraph.get(currencies.get(fromId)).get(currencies.get(toId));
+    }
+
+    /**
+     * @param argVersion the version of the rates of the copy
+     * @return a table of the same kind over a copy of the graph (see the copy constructor),
+     * which is changed before it is published
+     */
+    abstract RateTable copy(int argVersion);
+
+    /**
+     * Called when a currency gets its id, before any rate of it is added
+     * @param id the id of the currency
+     */
+    abstract void currencyAdded(int id);
+
+    /**
+     * Called after a whole set of rates was added to the graph
+     */
+    abstract void ratesReset();
+
+    /**
+     * Called after a single rate was added to the graph (or changed), on a copy that is not
+     * published yet
+     * @param fromId the id of the currency to convert from
+     * @param toId the id of the currency to convert to
+     * @param rate the rate that was added
+     */
+    abstract void rateAdded(int fromId, int toId, double rate);
+
+    /**
+     * @param fromId the id of the currency to convert from
+     * @param toId the id of the currency to convert to
+     * @return the exchange rate between the two currencies or NaN if there is no path
+     */
+    abstract double getRate(int fromId, int toId);
+}
@@ -0,0 +1,208 @@
+package org.poo.bank;
+
+import org.poo.accounts.Account;
+import org.poo.cards.Card;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hash indexes over the users, accounts, aliases and cards of a bank, so that every lookup
+ * is done in constant time instead of walking all the users and their accounts.
+ * The indexes are kept in sync by User, Bank and the cards whenever something changes.
+ * The card indexes are concurrent maps, as a one-time card gets a new number while the
+ * payments of other users look their cards up.
+ * Several accounts may share an alias; the lookup then returns the first of them in the
+ * order of the users and of their accounts, as walking all of them would.
+ */
+public final class Registry {
+    private final Map<String, User> usersByEmail;
+    private final Map<String, Account> accountsByIban;
+    private final Map<String, User> usersByIban;
+    private final Map<String, List<Account>> accountsByAlias;
+    // the position of every user in the bank, to order the accounts that share an alias
+    private final Map<User, Integer> userPositions;
+    private final Map<String, Account> accountsByCard;
+    private final Map<String, Card> cardsByNumber;
+
+    public Registry() {
+        this.usersByEmail = new HashMap<>();
+        this.accountsByIban = new HashMap<>();
+        this.usersByIban = new HashMap<>();
+        this.accountsByAlias = new HashMap<>();
+        this.userPositions = new IdentityHashMap<>();
+        this.accountsByCard = new ConcurrentHashMap<>();
+        this.cardsByNumber = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @param user the user to be indexed by email (the first user with an email is kept)
+     */
+    public void registerUser(final User user) {
+        usersByEmail.putIfAbsent(user.getEmail(), user);
+        userPositions.putIfAbsent(user, userPositions.size());
+    }
+
+    /**
+     * Indexes an account together with its alias and all of its cards
+     * @param user the owner of the account
+     * @param account the account to be indexed
+     */
+    public void registerAccount(final User user, final Account account) {
+        accountsByIban.put(account.getIban(), account);
+        usersByIban.put(account.getIban(), user);
+        addAlias(account.getAlias(), account);
+        for (Card card : account.getCards()) {
+            registerCard(account, card);
+        }
+    }
+
+    /**
+     * Removes an account, its alias and all of its cards from the indexes
+     * @param account the account to be removed
+     */
+    public void unregisterAccount(final Account account) {
+        accountsByIban.remove(account.getIban(), account);
+        usersByIban.remove(account.getIban());
+        removeAlias(account.getAlias(), account);
+        for (Card card : account.getCards()) {
+            unregisterCard(card.getCardNumber());
+        }
+    }
+
+    /**
+     * @param account the account that owns the card
+     * @param card the card to be indexed
+     */
+    public void registerCard(final Account account, final Card card) {
+        accountsByCard.put(card.getCardNumber(), account);
+        cardsByNumber.put(card.getCardNumber(), card);
+    }
+
+    /**
+     * @param cardNumber the card number to be removed from the indexes
+     */
+    public void unregisterCard(final String cardNumber) {
+        if (cardNumber == null) {
+            return;
+        }
+        accountsByCard.remove(cardNumber);
+        cardsByNumber.remove(cardNumber);
+    }
+
+    /**
+     * Moves a card under its new number (used when a one-time card is regenerated)
+     * @param oldCardNumber the number the card had before
+     * @param card the card, already holding its new number
+     */
+    public void renameCard(final String oldCardNumber, final Card card) {
+        Account account = accountsByCard.remove(oldCardNumber);
+        cardsByNumber.remove(oldCardNumber);
+        if (account != null) {
+            registerCard(account, card);
+        }
+    }
+
+    /**
+     * Must be called before the alias is changed on the account
+     * @param account the account whose alias is changed
+     * @param alias the new alias
+     */
+    public void updateAlias(final Account account, final String alias) {
+        removeAlias(account.getAlias(), account);
+        addAlias(alias, account);
+    }
+
+    /**
+     * @param email the email of the user
+     * @return the user with the given email
+     */
+    public User getUserWithEmail(final String email) {
+        return usersByEmail.get(email);
+    }
+
+    /**
+     * @param iban the IBAN of the account
+     * @return the account with the given IBAN
+     */
+    public Account getAccountWithIBAN(final String iban) {
+        return accountsByIban.get(iban);
+    }
+
+    /**
+     * @param iban the IBAN of the account
+     * @return the user that owns the account with the given IBAN
+     */
+    public User getUserWithAccount(final String iban) {
+        return usersByIban.get(iban);
+    }
+
+    /**
+     * @param alias the alias of the account
+     * @return the account with the given alias, the first one in the order of the users and
+     * of their accounts if several have it
+     */
+    public Account getAccountWithAlias(final String alias) {
+        List<Account> accounts = accountsByAlias.get(alias);
+        if (accounts == null) {
+            return null;
+        }
+
+        Account first = accounts.get(0);
+        for (int i = 1; i < accounts.size(); i++) {
+            if (comesBefore(accounts.get(i), first)) {
+                first = accounts.get(i);
+            }
+        }
+        return first;
+    }
+
+    /**
+     * @param cardNumber the card number
+     * @return the account that has the card with the given number
+     */
+    public Account getAccountWithCard(final String cardNumber) {
+        return cardNumber == null ? null : accountsByCard.get(cardNumber);
+    }
+
+    /**
+     * @param cardNumber the card number
+     * @return the card with the given number
+     */
+    public Card getCard(final String cardNumber) {
+        return cardNumber == null ? null : cardsByNumber.get(cardNumber);
+    }
+
+    private void addAlias(final String alias, final Account account) {
+        if (alias != null) {
+            accountsByAlias.computeIfAbsent(alias, key -> new ArrayList<>(1)).add(account);
+        }
+    }
+
+    private void removeAlias(final String alias, final Account account) {
+        if (alias == null) {
+            return;
+        }
+        List<Account> accounts = accountsByAlias.get(alias);
+        if (accounts != null && accounts.remove(account) && accounts.isEmpty()) {
+            accountsByAlias.remove(alias);
+        }
+    }
+
+    /**
+     * @return true if the first account comes before the second one in the order of the
+     * users and of their accounts
+     */
+    private boolean comesBefore(final Account first, final Account second) {
+        User firstUser = usersByIban.get(first.getIban());
+        User secondUser = usersByIban.get(second.getIban());
+        if (firstUser != secondUser) {
+            return userPositions.get(firstUser) < userPositions.get(secondUser);
+        }
+        return firstUser.getAccounts().indexOf(first) < firstUser.getAccounts().indexOf(second);
+    }
+}
@@ -1,5 +1,6 @@
 package org.poo.bank;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -9,22 +10,31 @@ import org.poo.accounts.Account;
 import org.poo.cards.Card;
 import org.poo.fileio.UserInput;
 import org.poo.transactions.Transaction;
+import org.poo.transactions.TransactionJournal;
+import org.poo.transactions.TransactionKind;
+import org.poo.transactions.TransactionLog;
+import org.poo.transactions.TransactionView;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
-import static org.poo.utils.Utils.generateCardNumber;
-
 public class User {
     private final UserInput userInfo;
     @Getter
     @Setter
     private ArrayList<Account> accounts;
-    private final ArrayList<Transaction> transactions;
+    @Getter
+    private final TransactionLog transactions;
+    private final Registry registry;
+    private final TransactionJournal journal;
 
-    public User(final UserInput userInfo) {
+    public User(final UserInput userInfo, final Registry registry,
+                final TransactionJournal journal) {
         this.userInfo = userInfo;
         this.accounts = new ArrayList<>();
-        this.transactions = new ArrayList<>();
+        this.transactions = new TransactionLog(journal);
+        this.registry = registry;
+        this.journal = journal;
     }
 
     /**
@@ -32,82 +42,93 @@ public class User {
      * @param timestamp the timestamp of the command
      */
     public void deleteCard(final String cardNumber, final int timestamp) {
-        for (Account account : accounts) {
-            for (Card card : account.getCards()) {
-                if (card.getCardNumber().equals(cardNumber)) {
-                    account.getCards().remove(card);
-
-                    Transaction transaction = new Transaction.TransactionBuilder()
-                            .setTimestamp(timestamp)
-                            .setDescription("The card has been destroyed")
-                            .setCardNumber(cardNumber)
-                            .setCardHolderEmail(userInfo.getEmail())
-                            .setAccountIBAN(account.getIban())
-                            .build();
-
-                    this.addTransaction(transaction);
-                    account.addTransaction(transaction);
-                    return;
-                }
-            }
+        Account account = getAccountWithCard(cardNumber);
+        if (account == null) {
+            return;
         }
+        account.getCards().remove(registry.getCard(cardNumber));
+        registry.unregisterCard(cardNumber);
+
+        Transaction transaction = new Transaction.TransactionBuilder()
+                .setTimestamp(timestamp)
+                .setKind(TransactionKind.CARD_DESTROYED)
+                .setDescription("The card has been destroyed")
+                .setCardNumber(cardNumber)
+                .setCardHolderEmail(userInfo.getEmail())
+                .setAccountIBAN(account.getIban())
+                .build();
+
+        int row = this.addTransaction(transaction);
+        account.getTransactions().addRow(row);
     }
 
     /**
      * @param iban the IBAN of the account where the card will be created
+     * @param cardNumber the number of the new card
      * @param timestamp the timestamp of the command
      */
-    public void createCard(final String iban, final int timestamp) {
+    public void createCard(final String iban, final String cardNumber, final int timestamp) {
         Account account = getAccount(iban);
-        String cardNumber = generateCardNumber();
 
         if (account == null) {
             return;
         }
-        account.createCard(cardNumber);
+        registry.registerCard(account, account.createCard(cardNumber));
 
         Transaction transaction = new Transaction.TransactionBuilder()
                 .setTimestamp(timestamp)
+                .setKind(TransactionKind.CARD_CREATED)
                 .setDescription("New card created")
                 .setCardNumber(cardNumber)
                 .setCardHolderEmail(userInfo.getEmail())
                 .setAccountIBAN(iban)
                 .build();
 
-        this.addTransaction(transaction);
-        account.addTransaction(transaction);
+        int row = this.addTransaction(transaction);
+        account.getTransactions().addRow(row);
     }
 
     /**
      * @param iban the IBAN of the account where the one-time card will be created
+     * @param cardNumber the number of the new card
      * @param timestamp the timestamp of the command
      */
-    public void createOneTimeCard(final String iban, final int timestamp) {
+    public void createOneTimeCard(final String iban, final String cardNumber,
+                                  final int timestamp) {
         Account account = getAccount(iban);
-        String cardNumber = generateCardNumber();
 
         if (account == null) {
             return;
         }
-        account.createOneTimeCard(cardNumber);
+        registry.registerCard(account, account.createOneTimeCard(cardNumber));
 
         Transaction transaction = new Transaction.TransactionBuilder()
                 .setTimestamp(timestamp)
+                .setKind(TransactionKind.CARD_CREATED)
                 .setDescription("New card created")
                 .setCardNumber(cardNumber)
                 .setCardHolderEmail(userInfo.getEmail())
                 .setAccountIBAN(iban)
                 .build();
 
-        this.addTransaction(transaction);
-        account.addTransaction(transaction);
+        int row = this.addTransaction(transaction);
+        account.getTransactions().addRow(row);
     }
 
     /**
      * @param transaction the transaction to be added to the user's list of transactions
+     * @return the offset of the transaction in the journal, to add it to the history of an
+     * account as well
+     */
+    public int addTransaction(final Transaction transaction) {
+        return transactions.add(transaction);
+    }
+
+    /**
+     * @return the details the user was created with
      */
-    public void addTransaction(final Transaction transaction) {
-        transactions.add(transaction);
+    UserInput getUserInfo() {
+        return userInfo;
     }
 
     /**
@@ -135,7 +156,10 @@ public class User {
      * @param account the account to be added to the user's list of accounts
      */
     public void addAccount(final Account account) {
+        // the history of the account indexes the same journal as the one of the user
+        account.setTransactions(new TransactionLog(journal));
         accounts.add(account);
+        registry.registerAccount(this, account);
     }
 
     /**
@@ -151,6 +175,7 @@ public class User {
                 // add transaction to user
                 Transaction transaction = new Transaction.TransactionBuilder()
                         .setTimestamp(timestamp)
+                        .setKind(TransactionKind.ACCOUNT_NOT_DELETED)
                         .setDescription("Account couldn't be deleted - there are funds remaining")
                         .build();
                 this.addTransaction(transaction);
@@ -158,6 +183,7 @@ public class User {
                         + "for details");
             }
             accounts.remove(account);
+            registry.unregisterAccount(account);
         }
     }
 
@@ -166,12 +192,8 @@ public class User {
      * @return the account with the given IBAN
      */
     public Account getAccount(final String iban) {
-        for (Account account : accounts) {
-            if (account.getIban().equals(iban)) {
-                return account;
-            }
-        }
-        return null;
+        return registry.getUserWithAccount(iban) == this
+                ? registry.getAccountWithIBAN(iban) : null;
     }
 
     /**
@@ -179,14 +201,20 @@ public class User {
      * @return the account that has the card with the given card number
      */
     public Account getAccountWithCard(final String cardNumber) {
-        for (Account account : accounts) {
-            for (Card card : account.getCards()) {
-                if (card.getCardNumber().equals(cardNumber)) {
-                    return account;
-                }
-            }
+        Account account = registry.getAccountWithCard(cardNumber);
+        if (account == null || registry.getUserWithAccount(account.getIban()) != this) {
+            return null;
         }
-        return null;
+        return account;
+    }
+
+    /**
+     * Keeps the bank's card index in sync after a card received a new number
+     * @param oldCardNumber the number the card had before
+     * @param card the card, already holding its new number
+     */
+    public void updateCardNumber(final String oldCardNumber, final Card card) {
+        registry.renameCard(oldCardNumber, card);
     }
 
     /**
@@ -220,10 +248,47 @@ public class User {
     public ArrayNode transactionsTransformToArrayNode(final ObjectMapper objectMapper) {
         ArrayNode transactionsArray = objectMapper.createArrayNode();
         if (!transactions.isEmpty()) {
-            for (Transaction transaction : transactions) {
+            for (TransactionView transaction : transactions) {
                 transactionsArray.add(transaction.transformToAnObjectNode(objectMapper));
             }
         }
         return transactionsArray;
     }
+
+    /**
+     * Writes the user straight through the generator (same fields as transformToAnObjectNode)
+     * @param generator the generator the user is written to
+     * @throws IOException if the user cannot be written
+     */
+    public void writeTo(final JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+
+        if (userInfo != null) {
+            generator.writeStringField("firstName", userInfo.getFirstName());
+            generator.writeStringField("lastName", userInfo.getLastName());
+            generator.writeStringField("email", userInfo.getEmail());
+        }
+
+        generator.writeArrayFieldStart("accounts");
+        if (accounts != null) {
+            for (Account account : accounts) {
+                account.writeTo(generator);
+            }
+        }
+        generator.writeEndArray();
+
+        generator.writeEndObject();
+    }
+
+    /**
+     * @param generator the generator the user's transactions are written to (as an array)
+     * @throws IOException if the transactions cannot be written
+     */
+    public void writeTransactionsTo(final JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        for (TransactionView transaction : transactions) {
+            transaction.writeTo(generator);
+        }
+        generator.writeEndArray();
+    }
 }
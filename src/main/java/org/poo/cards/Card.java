@@ -1,5 +1,6 @@
 package org.poo.cards;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.Getter;
@@ -7,7 +8,9 @@ import lombok.Setter;
 import org.poo.accounts.Account;
 import org.poo.bank.User;
 import org.poo.fileio.CommandInput;
-import org.poo.transactions.Transaction;
+import org.poo.utils.IdGenerator;
+
+import java.io.IOException;
 
 @Getter
 @Setter
@@ -43,23 +46,24 @@ public class Card {
     }
 
     /**
-     * This method is overridden in the OneTimeCard class
+     * Records the payment in the histories of the user and of the account (one row of the
+     * journal, written without building a Transaction) and in the spendings of the account;
+     * the OneTimeCard class also replaces the card
      * @param account the account of the user
      * @param user the user that owns the account
      * @param command the command input
+     * @param convertedAmount the amount paid, in the currency of the account
+     * @param rateVersion the version of the exchange rates the amount was converted with
+     * @param idGenerator the generator of the new card number, for the cards that change it
      * @throws UnsupportedOperationException if the card does not support post payment
      */
     public void handlePostPayment(final Account account, final User user,
-                                  final CommandInput command, final double convertedAmount) {
-        Transaction transaction = new Transaction.TransactionBuilder()
-                .setDescription("Card payment")
-                .setTimestamp(command.getTimestamp())
-                .setAmountPayOnline(convertedAmount)
-                .setCommerciant(command.getCommerciant())
-                .build();
-
-        user.addTransaction(transaction);
-        account.addTransaction(transaction);
+                                  final CommandInput command, final double convertedAmount,
+                                  final int rateVersion, final IdGenerator idGenerator) {
+        int row = user.getTransactions().addCardPayment(command.getTimestamp(), convertedAmount,
+                command.getCommerciant(), rateVersion);
+        account.getTransactions().addRow(row);
+        account.addSpending(command.getCommerciant(), command.getTimestamp(), convertedAmount);
     }
 
     /**
@@ -77,4 +81,15 @@ public class Card {
         }
         return cardNode;
     }
+
+    /**
+     * @param generator the generator the card is written to
+     * @throws IOException if the card cannot be written
+     */
+    public void writeTo(final JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("cardNumber", cardNumber);
+        generator.writeStringField("status", this.status ? "active" : "frozen");
+        generator.writeEndObject();
+    }
 }
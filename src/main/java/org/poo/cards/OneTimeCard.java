@@ -6,8 +6,8 @@ import org.poo.accounts.Account;
 import org.poo.bank.User;
 import org.poo.fileio.CommandInput;
 import org.poo.transactions.Transaction;
-
-import static org.poo.utils.Utils.generateCardNumber;
+import org.poo.transactions.TransactionKind;
+import org.poo.utils.IdGenerator;
 
 @Getter
 @Setter
@@ -21,9 +21,10 @@ public class OneTimeCard extends Card {
 
     /**
      * Resets the card number and resets the used status to false.
+     * @param newCardNumber the new number of the card
      */
-    public void resetCardNumber() {
-        this.setCardNumber(generateCardNumber());
+    public void resetCardNumber(final String newCardNumber) {
+        this.setCardNumber(newCardNumber);
         this.used = false;
     }
 
@@ -34,24 +35,22 @@ public class OneTimeCard extends Card {
      * @param account the account of the user
      * @param user the user that owns the account
      * @param command the command input
+     * @param convertedAmount the amount paid, in the currency of the account
+     * @param rateVersion the version of the exchange rates the amount was converted with
+     * @param idGenerator the generator of the new card number
      */
     @Override
     public void handlePostPayment(final Account account, final User user,
                                   final CommandInput command,
-                                  final double convertedAmount) {
-        // the payment transaction
-        Transaction transaction = new Transaction.TransactionBuilder()
-                .setDescription("Card payment")
-                .setTimestamp(command.getTimestamp())
-                .setAmountPayOnline(convertedAmount)
-                .setCommerciant(command.getCommerciant())
-                .build();
-
-        user.addTransaction(transaction);
-        account.addTransaction(transaction);
+                                  final double convertedAmount, final int rateVersion,
+                                  final IdGenerator idGenerator) {
+        // the payment itself
+        super.handlePostPayment(account, user, command, convertedAmount, rateVersion,
+                idGenerator);
 
         // the transaction for the destroyed card
         Transaction transactionOneTimeCard = new Transaction.TransactionBuilder()
+                .setKind(TransactionKind.CARD_DESTROYED)
                 .setDescription("The card has been destroyed")
                 .setTimestamp(command.getTimestamp())
                 .setAccountIBAN(account.getIban())
@@ -59,14 +58,17 @@ public class OneTimeCard extends Card {
                 .setCardNumber(this.getCardNumber())
                 .build();
 
-        user.addTransaction(transactionOneTimeCard);
-        account.addTransaction(transactionOneTimeCard);
+        int destroyedRow = user.addTransaction(transactionOneTimeCard);
+        account.getTransactions().addRow(destroyedRow);
 
         // reset the card number of the OneTimeCard
-        this.resetCardNumber();
+        String oldCardNumber = this.getCardNumber();
+        this.resetCardNumber(idGenerator.generateCardNumber());
+        user.updateCardNumber(oldCardNumber, this);
 
         // the transaction for the new card
         Transaction transactionNewOneTimeCard = new Transaction.TransactionBuilder()
+                .setKind(TransactionKind.CARD_CREATED)
                 .setDescription("New card created")
                 .setTimestamp(command.getTimestamp())
                 .setAccountIBAN(account.getIban())
@@ -74,7 +76,7 @@ public class OneTimeCard extends Card {
                 .setCardNumber(this.getCardNumber())
                 .build();
 
-        user.addTransaction(transactionNewOneTimeCard);
-        account.addTransaction(transactionNewOneTimeCard);
+        int createdRow = user.addTransaction(transactionNewOneTimeCard);
+        account.getTransactions().addRow(createdRow);
     }
 }
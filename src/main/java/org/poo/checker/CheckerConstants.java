@@ -20,6 +20,35 @@ public final class CheckerConstants {
     public static final String RESULT_PATH = "result";
     public static final String OUT_FILE = "out.txt";
 
+    // run with -Dpoo.streamingInput=true to execute the commands while they are read
+    public static final String STREAMING_INPUT_PROPERTY = "poo.streamingInput";
+    // run with -Dpoo.compactOutput=true to write the output without pretty printing
+    public static final String COMPACT_OUTPUT_PROPERTY = "poo.compactOutput";
+    // run with -Dpoo.journalDir=<dir> to keep the transactions of every run in a
+    // memory-mapped file in that directory instead of on the heap
+    public static final String JOURNAL_DIR_PROPERTY = "poo.journalDir";
+    public static final String JOURNAL_EXTENSION = ".journal";
+    // run with -Dpoo.snapshotDir=<dir> to save the state of the bank at the end of every run
+    // in that directory; with -Dpoo.loadSnapshot=true as well, a run starts from the
+    // snapshot of its input file (if there is one) instead of the users and rates it gives
+    public static final String SNAPSHOT_DIR_PROPERTY = "poo.snapshotDir";
+    public static final String LOAD_SNAPSHOT_PROPERTY = "poo.loadSnapshot";
+    public static final String SNAPSHOT_EXTENSION = ".snapshot";
+    // run with -Dpoo.commandLogDir=<dir> to log every command to <dir>/<input>.wal before it
+    // runs, synced once every -Dpoo.commandLogBatch=<n> commands; with -Dpoo.recover=true,
+    // the commands left in the log by an interrupted run are replayed before the input
+    public static final String COMMAND_LOG_DIR_PROPERTY = "poo.commandLogDir";
+    public static final String COMMAND_LOG_BATCH_PROPERTY = "poo.commandLogBatch";
+    public static final String RECOVER_PROPERTY = "poo.recover";
+    public static final String COMMAND_LOG_EXTENSION = ".wal";
+    // run with -Dpoo.commandThreads=<n> to run the commands of different users of a file on
+    // n threads at once (the output stays the same)
+    public static final String COMMAND_THREADS_PROPERTY = "poo.commandThreads";
+    // run with -Dpoo.rateCacheSize=<n> to find the exchange rate of a pair of currencies when
+    // it is first used, keeping the n most recently used pairs, instead of computing the rates
+    // of all the pairs up front (for large currency graphs)
+    public static final String RATE_CACHE_SIZE_PROPERTY = "poo.rateCacheSize";
+
     public static final String EMPTY_STR = "";
     public static final String DIGIT_REGEX = "\\D+";
     public static final String DECIMALS_REGEX = "[0-9]+(\\.[0-9]+)? [A-Z]{3}";
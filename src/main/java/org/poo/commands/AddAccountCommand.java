@@ -7,20 +7,26 @@ import org.poo.accounts.ClassicAccount;
 import org.poo.accounts.SavingsAccount;
 import org.poo.bank.Bank;
 import org.poo.fileio.CommandInput;
+import org.poo.utils.IdGenerator;
 
 public final class AddAccountCommand extends Command {
+    private final IdGenerator idGenerator;
 
-    public AddAccountCommand(final CommandInput commandInput, final ObjectMapper mapper) {
+    public AddAccountCommand(final CommandInput commandInput, final ObjectMapper mapper,
+                             final IdGenerator idGenerator) {
         super(commandInput, mapper);
+        this.idGenerator = idGenerator;
     }
 
     @Override
     public void execute(final Bank bank, final ObjectNode objectNode) {
+        String iban = idGenerator.generateIBAN();
         Account account = commandInput.getAccountType().equals("classic")
-                ? new ClassicAccount(commandInput.getCurrency(), commandInput.getAccountType(),
-                commandInput.getTimestamp())
-                : new SavingsAccount(commandInput.getCurrency(), commandInput.getAccountType(),
-                commandInput.getTimestamp(), commandInput.getInterestRate());
+                ? new ClassicAccount(iban, commandInput.getCurrency(),
+                commandInput.getAccountType(), commandInput.getTimestamp())
+                : new SavingsAccount(iban, commandInput.getCurrency(),
+                commandInput.getAccountType(), commandInput.getTimestamp(),
+                commandInput.getInterestRate());
         bank.addAccountToUser(commandInput.getEmail(), account);
     }
 }
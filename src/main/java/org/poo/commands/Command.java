@@ -1,9 +1,13 @@
 package org.poo.commands;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.poo.bank.Bank;
 import org.poo.fileio.CommandInput;
+import org.poo.output.OutputSink;
+
+import java.io.IOException;
 
 public abstract class Command {
     protected CommandInput commandInput;
@@ -21,6 +25,19 @@ public abstract class Command {
      */
     public abstract void execute(Bank bank, ObjectNode objectNode);
 
+    /**
+     * Executes the command and writes its result to the output, if it has one
+     * @param bank the bank object
+     * @param output the output where the command result is written
+     */
+    public void execute(final Bank bank, final OutputSink output) {
+        ObjectNode objectNode = mapper.createObjectNode();
+        execute(bank, objectNode);
+        if (!objectNode.isEmpty()) {
+            output.write(objectNode);
+        }
+    }
+
     /**
      * Adds the command and timestamp to the object node
      * @param objectNode the object node to be filled with the command and timestamp
@@ -29,4 +46,14 @@ public abstract class Command {
         objectNode.put("command", commandInput.getCommand());
         objectNode.put("timestamp", commandInput.getTimestamp());
     }
+
+    /**
+     * Writes the command and timestamp fields straight through the generator
+     * @param generator the generator of the command result
+     * @throws IOException if the fields cannot be written
+     */
+    protected void writeCommandAndTimestamp(final JsonGenerator generator) throws IOException {
+        generator.writeStringField("command", commandInput.getCommand());
+        generator.writeNumberField("timestamp", commandInput.getTimestamp());
+    }
 }
@@ -2,12 +2,20 @@ package org.poo.commands;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.poo.fileio.CommandInput;
+import org.poo.utils.IdGenerator;
 
 public final class CommandFactory {
     private final ObjectMapper mapper;
+    private final IdGenerator idGenerator;
 
-    public CommandFactory(final ObjectMapper mapper) {
+    /**
+     * @param mapper the object mapper of the results
+     * @param idGenerator the generator of the IBANs and card numbers of the bank the commands
+     * run on
+     */
+    public CommandFactory(final ObjectMapper mapper, final IdGenerator idGenerator) {
         this.mapper = mapper;
+        this.idGenerator = idGenerator;
     }
 
     /**
@@ -18,14 +26,15 @@ public final class CommandFactory {
     public Command createCommand(final CommandInput commandInput) {
         return switch (commandInput.getCommand()) {
             case "printUsers" -> new PrintUsersCommand(commandInput, mapper);
-            case "addAccount" -> new AddAccountCommand(commandInput, mapper);
-            case "createCard" -> new CreateCardCommand(commandInput, mapper);
+            case "addAccount" -> new AddAccountCommand(commandInput, mapper, idGenerator);
+            case "createCard" -> new CreateCardCommand(commandInput, mapper, idGenerator);
             case "addFunds" -> new AddFundsCommand(commandInput, mapper);
             case "deleteAccount" -> new DeleteAccountCommand(commandInput, mapper);
-            case "createOneTimeCard" -> new CreateOneTimeCardCommand(commandInput, mapper);
+            case "createOneTimeCard" ->
+                    new CreateOneTimeCardCommand(commandInput, mapper, idGenerator);
             case "deleteCard" -> new DeleteCardCommand(commandInput, mapper);
             case "setMinimumBalance" -> new SetMinimumBalanceCommand(commandInput, mapper);
-            case "payOnline" -> new PayOnlineCommand(commandInput, mapper);
+            case "payOnline" -> new PayOnlineCommand(commandInput, mapper, idGenerator);
             case "sendMoney" -> new SendMoneyCommand(commandInput, mapper);
             case "setAlias" -> new SetAliasCommand(commandInput, mapper);
             case "printTransactions" -> new PrintTransactionsCommand(commandInput, mapper);
@@ -35,6 +44,7 @@ public final class CommandFactory {
             case "spendingsReport" -> new SpendingsReportCommand(commandInput, mapper);
             case "changeInterestRate" -> new ChangeInterestRateCommand(commandInput, mapper);
             case "addInterest" -> new AddInterestCommand(commandInput, mapper);
+            case "updateExchangeRate" -> new UpdateExchangeRateCommand(commandInput, mapper);
             default -> null;
         };
     }
@@ -5,17 +5,22 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.poo.bank.Bank;
 import org.poo.bank.User;
 import org.poo.fileio.CommandInput;
+import org.poo.utils.IdGenerator;
 
 public final class CreateCardCommand extends Command {
-    public CreateCardCommand(final CommandInput commandInput, final ObjectMapper mapper) {
+    private final IdGenerator idGenerator;
+    public CreateCardCommand(final CommandInput commandInput, final ObjectMapper mapper,
+                             final IdGenerator idGenerator) {
         super(commandInput, mapper);
+        this.idGenerator = idGenerator;
     }
 
     @Override
     public void execute(final Bank bank, final ObjectNode objectNode) {
         User user = bank.getUserWithEmail(commandInput.getEmail());
         if (user != null) {
-            user.createCard(commandInput.getAccount(), commandInput.getTimestamp());
+            user.createCard(commandInput.getAccount(), idGenerator.generateCardNumber(),
+                    commandInput.getTimestamp());
         }
     }
 }
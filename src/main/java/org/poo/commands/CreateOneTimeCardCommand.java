@@ -5,18 +5,23 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.poo.bank.Bank;
 import org.poo.bank.User;
 import org.poo.fileio.CommandInput;
+import org.poo.utils.IdGenerator;
 
 public final class CreateOneTimeCardCommand extends Command {
+    private final IdGenerator idGenerator;
 
-    public CreateOneTimeCardCommand(final CommandInput commandInput, final ObjectMapper mapper) {
+    public CreateOneTimeCardCommand(final CommandInput commandInput, final ObjectMapper mapper,
+                                    final IdGenerator idGenerator) {
         super(commandInput, mapper);
+        this.idGenerator = idGenerator;
     }
 
     @Override
     public void execute(final Bank bank, final ObjectNode objectNode) {
         User user = bank.getUserWithEmail(commandInput.getEmail());
         if (user != null) {
-            user.createOneTimeCard(commandInput.getAccount(), commandInput.getTimestamp());
+            user.createOneTimeCard(commandInput.getAccount(), idGenerator.generateCardNumber(),
+                    commandInput.getTimestamp());
         }
     }
 }
@@ -5,18 +5,22 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.poo.bank.Bank;
 import org.poo.fileio.CommandInput;
 import org.poo.transactions.TransactionService;
+import org.poo.utils.IdGenerator;
 
 public final class PayOnlineCommand extends Command {
+    private final IdGenerator idGenerator;
 
-    public PayOnlineCommand(final CommandInput commandInput, final ObjectMapper mapper) {
+    public PayOnlineCommand(final CommandInput commandInput, final ObjectMapper mapper,
+                            final IdGenerator idGenerator) {
         super(commandInput, mapper);
+        this.idGenerator = idGenerator;
     }
 
     @Override
     public void execute(final Bank bank, final ObjectNode objectNode) {
         try {
             TransactionService transactionService = new TransactionService(bank);
-            transactionService.payOnline(commandInput);
+            transactionService.payOnline(commandInput, idGenerator);
         } catch (Exception e) {
             addCommandAndTimestamp(objectNode);
 
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.poo.bank.Bank;
 import org.poo.bank.User;
 import org.poo.fileio.CommandInput;
+import org.poo.output.OutputSink;
 
 public final class PrintTransactionsCommand extends Command {
 
@@ -21,4 +22,19 @@ public final class PrintTransactionsCommand extends Command {
         addCommandAndTimestamp(objectNode);
         objectNode.set("output", user.transactionsTransformToArrayNode(mapper));
     }
+
+    @Override
+    public void execute(final Bank bank, final OutputSink output) {
+        User user = bank.getUserWithEmail(commandInput.getEmail());
+        if (user == null) {
+            return;
+        }
+        output.write(generator -> {
+            generator.writeStartObject();
+            writeCommandAndTimestamp(generator);
+            generator.writeFieldName("output");
+            user.writeTransactionsTo(generator);
+            generator.writeEndObject();
+        });
+    }
 }
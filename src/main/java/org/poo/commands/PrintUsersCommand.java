@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.poo.bank.Bank;
 import org.poo.fileio.CommandInput;
+import org.poo.output.OutputSink;
 
 public final class PrintUsersCommand extends Command {
 
@@ -16,4 +17,15 @@ public final class PrintUsersCommand extends Command {
         addCommandAndTimestamp(objectNode);
         objectNode.set("output", bank.usersTransformToArrayNode(mapper));
     }
+
+    @Override
+    public void execute(final Bank bank, final OutputSink output) {
+        output.write(generator -> {
+            generator.writeStartObject();
+            writeCommandAndTimestamp(generator);
+            generator.writeFieldName("output");
+            bank.writeUsersTo(generator);
+            generator.writeEndObject();
+        });
+    }
 }
@@ -0,0 +1,33 @@
+package org.poo.commands;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.poo.bank.Bank;
+import org.poo.fileio.CommandInput;
+
+public final class UpdateExchangeRateCommand extends Command {
+
+    public UpdateExchangeRateCommand(final CommandInput commandInput, final ObjectMapper mapper) {
+        super(commandInput, mapper);
+    }
+
+    @Override
+    public void execute(final Bank bank, final ObjectNode objectNode) {
+        // the payments already running keep the rates they read, the next ones use the new
+        // version (see ExchangeRate.addExchangeRate)
+        if (commandInput.getFrom() == null || commandInput.getTo() == null
+                || commandInput.getFrom().equals(commandInput.getTo())
+                || !(commandInput.getRate() > 0) || Double.isInfinite(commandInput.getRate())) {
+            addCommandAndTimestamp(objectNode);
+
+            ObjectNode outputNode = mapper.createObjectNode();
+            outputNode.put("description", "Invalid exchange rate");
+            outputNode.put("timestamp", commandInput.getTimestamp());
+            objectNode.set("output", outputNode);
+            return;
+        }
+
+        bank.addExchangeRate(commandInput.getFrom(), commandInput.getTo(),
+                commandInput.getRate());
+    }
+}
@@ -24,6 +24,8 @@ public final class CommandInput {
     private String splitPaymentType;
     private String type;
     private String location;
+    private String from;
+    private String to;
     private int timestamp;
     private int startTimestamp;
     private int endTimestamp;
@@ -32,6 +34,7 @@ public final class CommandInput {
     private double depositLimit;
     private double amount;
     private double minBalance;
+    private double rate;
     private List<String> accounts;
-    private List<Double> amountForUsers;
+    private double[] amountForUsers;
 }
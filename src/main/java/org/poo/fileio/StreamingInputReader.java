@@ -0,0 +1,88 @@
+package org.poo.fileio;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reads an input file section by section: everything before "commands" is read at once by
+ * {@link #readHeader()}, after which the commands are handed out one at a time by
+ * {@link #nextCommand()}, so the command array is never held in memory.
+ */
+public final class StreamingInputReader implements Closeable {
+    private static final String USERS = "users";
+    private static final String EXCHANGE_RATES = "exchangeRates";
+    private static final String COMMERCIANTS = "commerciants";
+    private static final String COMMANDS = "commands";
+
+    private final JsonParser parser;
+    private final ObjectReader commandReader;
+    private boolean inCommands;
+
+    public StreamingInputReader(final File file, final ObjectMapper mapper) throws IOException {
+        this.parser = mapper.getFactory().createParser(file);
+        this.commandReader = mapper.readerFor(CommandInput.class);
+        this.inCommands = false;
+    }
+
+    /**
+     * Reads the sections that come before the commands, stopping right at the start of the
+     * commands array
+     * @return the input without the commands
+     * @throws IOException if the file is malformed or the commands come before the users
+     * and the exchange rates
+     */
+    public ObjectInput readHeader() throws IOException {
+        ObjectInput header = new ObjectInput();
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("The input must be a JSON object");
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case USERS -> header.setUsers(parser.readValueAs(UserInput[].class));
+                case EXCHANGE_RATES ->
+                        header.setExchangeRates(parser.readValueAs(ExchangeInput[].class));
+                case COMMERCIANTS ->
+                        header.setCommerciants(parser.readValueAs(CommerciantInput[].class));
+                case COMMANDS -> {
+                    if (header.getUsers() == null || header.getExchangeRates() == null) {
+                        throw new IOException("The commands must come after the users "
+                                + "and the exchange rates to be streamed");
+                    }
+                    inCommands = parser.currentToken() == JsonToken.START_ARRAY;
+                    return header;
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return header;
+    }
+
+    /**
+     * @return the next command from the input or null if there are no more commands
+     * @throws IOException if the command cannot be read
+     */
+    public CommandInput nextCommand() throws IOException {
+        if (!inCommands) {
+            return null;
+        }
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            inCommands = false;
+            return null;
+        }
+        return commandReader.readValue(parser);
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
@@ -0,0 +1,596 @@
+package org.poo.generator;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.poo.utils.IdGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates inputs in the same format as the files from input/, of any size: users, a tree of
+ * exchange rates, commerciants, a setup phase (accounts, funds and cards for every user) and
+ * then a random mix of commands drawn with the configured weights.
+ * The IBANs and card numbers referenced by the commands are the ones the bank will generate,
+ * because the generator draws them from the same seeded generators, in the same order.
+ * Payments are never made with one-time cards, since each one would renew the card number
+ * and shift every number generated after it.
+ * Usage: WorkloadGenerator output.json [users=N] [accountsPerUser=N] [cardsPerAccount=N]
+ * [commands=N] [currencies=N] [currencyGraphDepth=N] [commerciants=N] [seed=N]
+ * [weights=payOnline:80,sendMoney:10,...]
+ */
+public final class WorkloadGenerator {
+    private static final String[] CURRENCY_CODES = {"RON", "EUR", "USD", "GBP", "JPY", "CAD",
+            "CHF", "AUD", "SEK", "NOK", "DKK", "PLN", "HUF", "CZK", "BGN", "TRY"};
+    private static final String[] COMMERCIANT_TYPES = {"Food", "Clothes", "Tech"};
+    private static final String[] CASHBACK_STRATEGIES = {"nrOfTransactions",
+            "spendingThreshold"};
+    private static final int LETTERS = 26;
+    private static final int CENTS = 100;
+    private static final double MIN_RATE = 0.1;
+    private static final double MAX_RATE = 10;
+    private static final double INITIAL_FUNDS = 100_000;
+    private static final double MAX_PAYMENT = 200;
+    private static final double MAX_MIN_BALANCE = 50;
+    private static final double INTEREST_RATE = 0.05;
+    private static final int MAX_SPLIT_ACCOUNTS = 4;
+    private static final int SAVINGS_EVERY = 4;
+    // the default mix, dominated by card payments
+    private static final String DEFAULT_WEIGHTS = "payOnline:60,sendMoney:10,addFunds:6,"
+            + "splitPayment:4,checkCardStatus:3,createCard:3,createOneTimeCard:1,deleteCard:1,"
+            + "addAccount:2,setMinimumBalance:1,setAlias:1,report:2,spendingsReport:2,"
+            + "printTransactions:1,changeInterestRate:1,addInterest:1";
+
+    private final int users;
+    private final int accountsPerUser;
+    private final int cardsPerAccount;
+    private final int commands;
+    private final int currencies;
+    private final int currencyGraphDepth;
+    private final int commerciants;
+    private final long seed;
+    private final Map<String, Integer> weights;
+
+    // state of the generated bank, so the commands refer to things that exist
+    private Random random;
+    private JsonGenerator generator;
+    private IdGenerator ids;
+    private String[] currencyNames;
+    private String[] emails;
+    private final List<String> ibans;
+    private final List<Integer> ibanOwners;
+    private final List<String> cardNumbers;
+    private final List<Integer> cardAccounts;
+    private final List<Integer> savingsAccounts;
+    private int timestamp;
+    private int aliases;
+
+    private WorkloadGenerator(final WorkloadGeneratorBuilder builder) {
+        this.users = builder.users;
+        this.accountsPerUser = builder.accountsPerUser;
+        this.cardsPerAccount = builder.cardsPerAccount;
+        this.commands = builder.commands;
+        this.currencies = builder.currencies;
+        this.currencyGraphDepth = builder.currencyGraphDepth;
+        this.commerciants = builder.commerciants;
+        this.seed = builder.seed;
+        this.weights = builder.weights;
+        this.ibans = new ArrayList<>();
+        this.ibanOwners = new ArrayList<>();
+        this.cardNumbers = new ArrayList<>();
+        this.cardAccounts = new ArrayList<>();
+        this.savingsAccounts = new ArrayList<>();
+    }
+
+    public static final class WorkloadGeneratorBuilder {
+        private static final int DEFAULT_USERS = 100;
+        private static final int DEFAULT_COMMANDS = 10_000;
+        private static final int DEFAULT_CURRENCIES = 4;
+        private static final int DEFAULT_DEPTH = 2;
+        private static final int DEFAULT_COMMERCIANTS = 20;
+
+        private int users = DEFAULT_USERS;
+        private int accountsPerUser = 2;
+        private int cardsPerAccount = 2;
+        private int commands = DEFAULT_COMMANDS;
+        private int currencies = DEFAULT_CURRENCIES;
+        private int currencyGraphDepth = DEFAULT_DEPTH;
+        private int commerciants = DEFAULT_COMMERCIANTS;
+        private long seed = 1;
+        private Map<String, Integer> weights = parseWeights(DEFAULT_WEIGHTS);
+
+        /**
+         * @param argUsers the number of users
+         */
+        public WorkloadGeneratorBuilder setUsers(final int argUsers) {
+            this.users = argUsers;
+            return this;
+        }
+
+        /**
+         * @param argAccountsPerUser the accounts every user opens in the setup phase
+         */
+        public WorkloadGeneratorBuilder setAccountsPerUser(final int argAccountsPerUser) {
+            this.accountsPerUser = argAccountsPerUser;
+            return this;
+        }
+
+        /**
+         * @param argCardsPerAccount the cards created for every account in the setup phase
+         */
+        public WorkloadGeneratorBuilder setCardsPerAccount(final int argCardsPerAccount) {
+            this.cardsPerAccount = argCardsPerAccount;
+            return this;
+        }
+
+        /**
+         * @param argCommands the number of commands in the random mix (after the setup)
+         */
+        public WorkloadGeneratorBuilder setCommands(final int argCommands) {
+            this.commands = argCommands;
+            return this;
+        }
+
+        /**
+         * @param argCurrencies the number of currencies
+         */
+        public WorkloadGeneratorBuilder setCurrencies(final int argCurrencies) {
+            this.currencies = argCurrencies;
+            return this;
+        }
+
+        /**
+         * @param argCurrencyGraphDepth the number of rates between the first currency and the
+         *                              farthest one (two currencies can be up to twice as far)
+         */
+        public WorkloadGeneratorBuilder setCurrencyGraphDepth(final int argCurrencyGraphDepth) {
+            this.currencyGraphDepth = argCurrencyGraphDepth;
+            return this;
+        }
+
+        /**
+         * @param argCommerciants the number of commerciants
+         */
+        public WorkloadGeneratorBuilder setCommerciants(final int argCommerciants) {
+            this.commerciants = argCommerciants;
+            return this;
+        }
+
+        /**
+         * @param argSeed the seed of the random choices (same seed, same input)
+         */
+        public WorkloadGeneratorBuilder setSeed(final long argSeed) {
+            this.seed = argSeed;
+            return this;
+        }
+
+        /**
+         * @param argWeights the relative weight of every command in the random mix
+         */
+        public WorkloadGeneratorBuilder setWeights(final Map<String, Integer> argWeights) {
+            this.weights = new LinkedHashMap<>(argWeights);
+            return this;
+        }
+
+        /**
+         * @return the WorkloadGenerator object
+         */
+        public WorkloadGenerator build() {
+            if (users <= 0 || accountsPerUser <= 0 || currencies <= 0) {
+                throw new IllegalArgumentException("There must be at least one user, "
+                        + "account and currency");
+            }
+            return new WorkloadGenerator(this);
+        }
+    }
+
+    /**
+     * @param file the file where the input is written
+     * @throws IOException if the file cannot be written
+     */
+    public void generate(final File file) throws IOException {
+        try (JsonGenerator fileGenerator = new JsonFactory().createGenerator(file,
+                JsonEncoding.UTF8)) {
+            generate(fileGenerator);
+        }
+    }
+
+    /**
+     * @param out the stream where the input is written (left open)
+     * @throws IOException if the input cannot be written
+     */
+    public void generate(final OutputStream out) throws IOException {
+        try (JsonGenerator streamGenerator = new JsonFactory().createGenerator(out,
+                JsonEncoding.UTF8)) {
+            streamGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generate(streamGenerator);
+        }
+    }
+
+    private void generate(final JsonGenerator argGenerator) throws IOException {
+        this.generator = argGenerator;
+        this.random = new Random(seed);
+        this.ibans.clear();
+        this.ibanOwners.clear();
+        this.cardNumbers.clear();
+        this.cardAccounts.clear();
+        this.savingsAccounts.clear();
+        this.timestamp = 1;
+        this.aliases = 0;
+        // a new bank starts from a new generator, so the IBANs and card numbers are known
+        this.ids = new IdGenerator();
+
+        generator.writeStartObject();
+        writeUsers();
+        writeCommerciants();
+        writeExchangeRates();
+
+        generator.writeArrayFieldStart("commands");
+        writeSetup();
+        String[] names = weights.keySet().toArray(new String[0]);
+        int[] cumulative = new int[names.length];
+        int total = 0;
+        for (int i = 0; i < names.length; i++) {
+            total += weights.get(names[i]);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < commands && total > 0; i++) {
+            int pick = random.nextInt(total);
+            int index = 0;
+            while (cumulative[index] <= pick) {
+                index++;
+            }
+            writeCommand(names[index]);
+        }
+        generator.writeEndArray();
+
+        generator.writeEndObject();
+    }
+
+    private void writeUsers() throws IOException {
+        emails = new String[users];
+        generator.writeArrayFieldStart("users");
+        for (int i = 0; i < users; i++) {
+            emails[i] = "user" + i + "@poo.ro";
+            generator.writeStartObject();
+            generator.writeStringField("firstName", "First" + i);
+            generator.writeStringField("lastName", "Last" + i);
+            generator.writeStringField("email", emails[i]);
+            generator.writeStringField("birthDate", "2000-01-01");
+            generator.writeStringField("occupation", "student");
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    private void writeCommerciants() throws IOException {
+        generator.writeArrayFieldStart("commerciants");
+        for (int i = 0; i < commerciants; i++) {
+            generator.writeStartObject();
+            generator.writeStringField("commerciant", commerciantName(i));
+            generator.writeNumberField("id", i);
+            generator.writeStringField("account", "RO00POOBCOMMERCIANT" + i);
+            generator.writeStringField("type", COMMERCIANT_TYPES[i % COMMERCIANT_TYPES.length]);
+            generator.writeStringField("cashbackStrategy",
+                    CASHBACK_STRATEGIES[i % CASHBACK_STRATEGIES.length]);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * The currencies form a tree: every currency except the first one is linked to a
+     * random currency from the level above it, with as many levels as the configured depth
+     */
+    private void writeExchangeRates() throws IOException {
+        currencyNames = new String[currencies];
+        for (int i = 0; i < currencies; i++) {
+            currencyNames[i] = currencyName(i);
+        }
+
+        int depth = Math.max(1, Math.min(currencyGraphDepth, currencies - 1));
+        List<List<Integer>> levels = new ArrayList<>();
+        for (int level = 0; level <= depth; level++) {
+            levels.add(new ArrayList<>());
+        }
+        levels.get(0).add(0);
+
+        generator.writeArrayFieldStart("exchangeRates");
+        for (int i = 1; i < currencies; i++) {
+            int level = 1 + (i - 1) % depth;
+            List<Integer> parents = levels.get(level - 1);
+            int parent = parents.get(random.nextInt(parents.size()));
+            levels.get(level).add(i);
+
+            generator.writeStartObject();
+            generator.writeStringField("from", currencyNames[parent]);
+            generator.writeStringField("to", currencyNames[i]);
+            generator.writeNumberField("rate", amount(MIN_RATE, MAX_RATE));
+            generator.writeNumberField("timestamp", 0);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Accounts (every fourth one a savings account), funds and cards for every user
+     */
+    private void writeSetup() throws IOException {
+        for (int user = 0; user < users; user++) {
+            for (int a = 0; a < accountsPerUser; a++) {
+                boolean savings = ibans.size() % SAVINGS_EVERY == SAVINGS_EVERY - 1;
+                addAccount(user, savings);
+
+                int account = ibans.size() - 1;
+                startCommand("addFunds");
+                generator.writeStringField("account", ibans.get(account));
+                generator.writeNumberField("amount", INITIAL_FUNDS);
+                generator.writeEndObject();
+
+                if (savings) {
+                    continue;
+                }
+                for (int c = 0; c < cardsPerAccount; c++) {
+                    createCard(account, false);
+                }
+            }
+        }
+    }
+
+    private void writeCommand(final String command) throws IOException {
+        int account = random.nextInt(ibans.size());
+        switch (command) {
+            case "payOnline" -> {
+                if (cardNumbers.isEmpty()) {
+                    createCard(account, false);
+                    return;
+                }
+                int card = random.nextInt(cardNumbers.size());
+                startCommand(command);
+                generator.writeStringField("cardNumber", cardNumbers.get(card));
+                generator.writeNumberField("amount", amount(1, MAX_PAYMENT));
+                generator.writeStringField("currency", randomCurrency());
+                generator.writeStringField("description", "Card payment");
+                generator.writeStringField("commerciant",
+                        commerciantName(random.nextInt(Math.max(1, commerciants))));
+                generator.writeStringField("email", emails[ownerOfCard(card)]);
+                generator.writeEndObject();
+            }
+            case "sendMoney" -> {
+                int receiver = random.nextInt(ibans.size());
+                startCommand(command);
+                generator.writeStringField("account", ibans.get(account));
+                generator.writeNumberField("amount", amount(1, MAX_PAYMENT));
+                generator.writeStringField("receiver", ibans.get(receiver));
+                generator.writeStringField("description", "Transfer");
+                generator.writeStringField("email", emails[ibanOwners.get(account)]);
+                generator.writeEndObject();
+            }
+            case "addFunds" -> {
+                startCommand(command);
+                generator.writeStringField("account", ibans.get(account));
+                generator.writeNumberField("amount", amount(1, INITIAL_FUNDS / CENTS));
+                generator.writeEndObject();
+            }
+            case "splitPayment" -> {
+                int involved = 2 + random.nextInt(MAX_SPLIT_ACCOUNTS - 1);
+                startCommand(command);
+                generator.writeArrayFieldStart("accounts");
+                for (int i = 0; i < involved; i++) {
+                    generator.writeString(ibans.get(random.nextInt(ibans.size())));
+                }
+                generator.writeEndArray();
+                generator.writeNumberField("amount", amount(1, MAX_PAYMENT));
+                generator.writeStringField("currency", randomCurrency());
+                generator.writeEndObject();
+            }
+            case "checkCardStatus" -> {
+                if (cardNumbers.isEmpty()) {
+                    return;
+                }
+                startCommand(command);
+                generator.writeStringField("cardNumber",
+                        cardNumbers.get(random.nextInt(cardNumbers.size())));
+                generator.writeEndObject();
+            }
+            case "createCard" -> createCard(account, false);
+            case "createOneTimeCard" -> createCard(account, true);
+            case "deleteCard" -> {
+                // keep at least one card for the payments
+                if (cardNumbers.size() <= 1) {
+                    return;
+                }
+                int card = random.nextInt(cardNumbers.size());
+                startCommand(command);
+                generator.writeStringField("cardNumber", cardNumbers.get(card));
+                generator.writeStringField("email", emails[ownerOfCard(card)]);
+                generator.writeEndObject();
+                removeCard(card);
+            }
+            case "addAccount" -> addAccount(random.nextInt(users), false);
+            case "setMinimumBalance" -> {
+                startCommand(command);
+                generator.writeStringField("account", ibans.get(account));
+                generator.writeNumberField("amount", amount(0, MAX_MIN_BALANCE));
+                generator.writeEndObject();
+            }
+            case "setAlias" -> {
+                startCommand(command);
+                generator.writeStringField("email", emails[ibanOwners.get(account)]);
+                generator.writeStringField("account", ibans.get(account));
+                generator.writeStringField("alias", "alias" + aliases++);
+                generator.writeEndObject();
+            }
+            case "report", "spendingsReport" -> {
+                int start = random.nextInt(timestamp);
+                startCommand(command);
+                generator.writeStringField("account", ibans.get(account));
+                generator.writeNumberField("startTimestamp", start);
+                generator.writeNumberField("endTimestamp",
+                        start + random.nextInt(timestamp - start + 1));
+                generator.writeEndObject();
+            }
+            case "printTransactions" -> {
+                startCommand(command);
+                generator.writeStringField("email", emails[random.nextInt(users)]);
+                generator.writeEndObject();
+            }
+            case "printUsers" -> {
+                startCommand(command);
+                generator.writeEndObject();
+            }
+            case "changeInterestRate" -> {
+                startCommand(command);
+                generator.writeStringField("account", ibans.get(savingsAccount(account)));
+                generator.writeNumberField("interestRate", amount(0, INTEREST_RATE));
+                generator.writeEndObject();
+            }
+            case "addInterest" -> {
+                startCommand(command);
+                generator.writeStringField("account", ibans.get(savingsAccount(account)));
+                generator.writeEndObject();
+            }
+            default -> throw new IllegalArgumentException("Unsupported command " + command);
+        }
+    }
+
+    private void startCommand(final String command) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("command", command);
+        generator.writeNumberField("timestamp", timestamp++);
+    }
+
+    private void addAccount(final int user, final boolean savings) throws IOException {
+        startCommand("addAccount");
+        generator.writeStringField("email", emails[user]);
+        generator.writeStringField("currency", randomCurrency());
+        generator.writeStringField("accountType", savings ? "savings" : "classic");
+        if (savings) {
+            generator.writeNumberField("interestRate", INTEREST_RATE);
+        }
+        generator.writeEndObject();
+
+        if (savings) {
+            savingsAccounts.add(ibans.size());
+        }
+        ibans.add(ids.generateIBAN());
+        ibanOwners.add(user);
+    }
+
+    private void createCard(final int account, final boolean oneTime) throws IOException {
+        startCommand(oneTime ? "createOneTimeCard" : "createCard");
+        generator.writeStringField("account", ibans.get(account));
+        generator.writeStringField("email", emails[ibanOwners.get(account)]);
+        generator.writeEndObject();
+
+        String cardNumber = ids.generateCardNumber();
+        if (!oneTime) {
+            cardNumbers.add(cardNumber);
+            cardAccounts.add(account);
+        }
+    }
+
+    /**
+     * Swaps the card with the last one, so removing it does not shift the lists
+     */
+    private void removeCard(final int card) {
+        int last = cardNumbers.size() - 1;
+        cardNumbers.set(card, cardNumbers.get(last));
+        cardAccounts.set(card, cardAccounts.get(last));
+        cardNumbers.remove(last);
+        cardAccounts.remove(last);
+    }
+
+    /**
+     * @return a random savings account or the given account if there are none
+     */
+    private int savingsAccount(final int account) {
+        if (savingsAccounts.isEmpty()) {
+            return account;
+        }
+        return savingsAccounts.get(random.nextInt(savingsAccounts.size()));
+    }
+
+    private int ownerOfCard(final int card) {
+        return ibanOwners.get(cardAccounts.get(card));
+    }
+
+    private String randomCurrency() {
+        return currencyNames[random.nextInt(currencyNames.length)];
+    }
+
+    /**
+     * @return a random amount with at most two decimals
+     */
+    private double amount(final double min, final double max) {
+        return Math.round((min + random.nextDouble() * (max - min)) * CENTS) / (double) CENTS;
+    }
+
+    private static String commerciantName(final int index) {
+        return "Commerciant" + index;
+    }
+
+    /**
+     * The real currency codes first, then made up three letter codes
+     */
+    private static String currencyName(final int index) {
+        if (index < CURRENCY_CODES.length) {
+            return CURRENCY_CODES[index];
+        }
+        int code = index - CURRENCY_CODES.length;
+        return "X" + (char) ('A' + code / LETTERS % LETTERS) + (char) ('A' + code % LETTERS);
+    }
+
+    /**
+     * @param args the output file followed by name=value options (see the class comment)
+     * @throws IOException if the output file cannot be written
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: WorkloadGenerator output.json [name=value ...]");
+            return;
+        }
+
+        WorkloadGeneratorBuilder builder = new WorkloadGeneratorBuilder();
+        for (int i = 1; i < args.length; i++) {
+            String[] option = args[i].split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected name=value, got " + args[i]);
+            }
+            switch (option[0]) {
+                case "users" -> builder.setUsers(Integer.parseInt(option[1]));
+                case "accountsPerUser" -> builder.setAccountsPerUser(Integer.parseInt(option[1]));
+                case "cardsPerAccount" -> builder.setCardsPerAccount(Integer.parseInt(option[1]));
+                case "commands" -> builder.setCommands(Integer.parseInt(option[1]));
+                case "currencies" -> builder.setCurrencies(Integer.parseInt(option[1]));
+                case "currencyGraphDepth" ->
+                        builder.setCurrencyGraphDepth(Integer.parseInt(option[1]));
+                case "commerciants" -> builder.setCommerciants(Integer.parseInt(option[1]));
+                case "seed" -> builder.setSeed(Long.parseLong(option[1]));
+                case "weights" -> builder.setWeights(parseWeights(option[1]));
+                default -> throw new IllegalArgumentException("Unknown option " + option[0]);
+            }
+        }
+        builder.build().generate(new File(args[0]));
+    }
+
+    /**
+     * @param weights the weights as "command:weight,command:weight"
+     * @return the weights by command name
+     */
+    public static Map<String, Integer> parseWeights(final String weights) {
+        Map<String, Integer> parsed = new LinkedHashMap<>();
+        for (String entry : weights.split(",")) {
+            String[] pair = entry.split(":", 2);
+            parsed.put(pair[0].trim(), Integer.parseInt(pair[1].trim()));
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,162 @@
+package org.poo.main;
+
+import lombok.Getter;
+import org.poo.checker.CheckerConstants;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs all the input files of a directory in parallel, each on a bank of its own, on a fixed
+ * pool of workers (one per core by default, as running a file is CPU bound). Every file
+ * writes its own output, "out_" + the name of the input file, and the time and throughput
+ * of every file are reported at the end, together with the totals of the batch.
+ * <p>
+ * Usage: {@code BatchRunner [input directory] [output directory] [workers]}, by default the
+ * directories of the checker and as many workers as cores. The run mode properties of
+ * {@link CheckerConstants} apply to every file.
+ */
+public final class BatchRunner {
+    private static final String OUTPUT_PREFIX = "out_";
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final int WORKERS_ARGUMENT = 2;
+
+    /**
+     * for coding style
+     */
+    private BatchRunner() {
+    }
+
+    /**
+     * @param args the input directory, the output directory and the number of workers (all
+     * optional)
+     * @throws IOException if the input directory cannot be listed or the output directory
+     * cannot be created
+     * @throws InterruptedException if interrupted while waiting for the files
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        File inputDir = new File(args.length > 0 ? args[0] : CheckerConstants.TESTS_PATH);
+        Path outputDir = Paths.get(args.length > 1 ? args[1] : CheckerConstants.RESULT_PATH);
+        int workers = args.length > WORKERS_ARGUMENT
+                ? Integer.parseInt(args[WORKERS_ARGUMENT])
+                : Runtime.getRuntime().availableProcessors();
+
+        List<File> inputs = Arrays.stream(Objects.requireNonNull(inputDir.listFiles(),
+                        "Not a directory: " + inputDir))
+                .filter(File::isFile)
+                .sorted(Comparator.comparing(File::getName))
+                .toList();
+
+        long start = System.nanoTime();
+        List<FileResult> results = run(inputs, outputDir, workers);
+        long wallTime = System.nanoTime() - start;
+
+        long commands = 0;
+        int failed = 0;
+        for (FileResult result : results) {
+            System.out.println(result);
+            commands += result.getCommands();
+            if (result.getError() != null) {
+                failed++;
+            }
+        }
+        System.out.println("-----------------------------------------------------");
+        System.out.printf("%d files (%d failed) on %d workers: %d commands in %.1f ms, "
+                        + "%.0f commands/s%n", results.size(), failed, workers, commands,
+                wallTime / NANOS_PER_MILLI, commands * NANOS_PER_SECOND / wallTime);
+    }
+
+    /**
+     * Runs the files on a pool of workers; a file that fails does not stop the others
+     * @param inputs the input files
+     * @param outputDir where the outputs are written
+     * @param workers how many files are run at the same time
+     * @return the result of every file, in the order of the inputs
+     * @throws IOException if the output directory cannot be created
+     * @throws InterruptedException if interrupted while waiting for the files
+     */
+    public static List<FileResult> run(final List<File> inputs, final Path outputDir,
+                                       final int workers)
+            throws IOException, InterruptedException {
+        Files.createDirectories(outputDir);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<FileResult>> futures = new ArrayList<>();
+            for (File input : inputs) {
+                Path output = outputDir.resolve(OUTPUT_PREFIX + input.getName());
+                futures.add(pool.submit(() -> runFile(input, output)));
+            }
+
+            List<FileResult> results = new ArrayList<>();
+            for (Future<FileResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static FileResult runFile(final File input, final Path output) {
+        long start = System.nanoTime();
+        try {
+            long commands = Main.run(input, output.toString());
+            return new FileResult(input.getName(), commands, System.nanoTime() - start, null);
+        } catch (IOException | RuntimeException e) {
+            return new FileResult(input.getName(), 0, System.nanoTime() - start, e);
+        }
+    }
+
+    /**
+     * How long one input file took and how many commands it ran
+     */
+    @Getter
+    public static final class FileResult {
+        private final String name;
+        private final long commands;
+        private final long nanos;
+        private final Exception error;
+
+        public FileResult(final String name, final long commands, final long nanos,
+                          final Exception error) {
+            this.name = name;
+            this.commands = commands;
+            this.nanos = nanos;
+            this.error = error;
+        }
+
+        /**
+         * @return the commands run per second
+         */
+        public double getThroughput() {
+            return commands * NANOS_PER_SECOND / nanos;
+        }
+
+        @Override
+        public String toString() {
+            if (error != null) {
+                return String.format("%-40s FAILED after %.1f ms: %s", name,
+                        nanos / NANOS_PER_MILLI, error);
+            }
+            return String.format("%-40s %10d commands %10.1f ms %12.0f commands/s", name,
+                    commands, nanos / NANOS_PER_MILLI, getThroughput());
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package org.poo.main;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
-import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.poo.bank.BankSnapshot;
+import org.poo.bank.CommandLog;
 import org.poo.bank.InitBank;
+import org.poo.bank.RateTable;
 import org.poo.checker.Checker;
 import org.poo.checker.CheckerConstants;
 import org.poo.fileio.ObjectInput;
+import org.poo.fileio.StreamingInputReader;
+import org.poo.output.JsonGeneratorSink;
+import org.poo.output.OutputSink;
+import org.poo.transactions.TransactionJournal;
 
 import java.io.File;
 import java.io.IOException;
@@ -16,6 +21,8 @@ import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * The entry point to this homework. It runs the checker that tests your implementation.
@@ -69,37 +76,196 @@ public final class Main {
      */
     public static void action(final String filePath1,
                               final String filePath2) throws IOException {
+        run(new File(CheckerConstants.TESTS_PATH + filePath1), filePath2);
+    }
+
+    /**
+     * Runs an input file on a bank of its own, so several files can be run at the same time
+     * (the journal, snapshot and command log files are named after the input file)
+     * @param file the input file
+     * @param outputPath the output file
+     * @return how many commands the bank has run
+     * @throws IOException in case of exceptions to reading / writing
+     */
+    public static long run(final File file, final String outputPath) throws IOException {
+        if (Boolean.getBoolean(CheckerConstants.STREAMING_INPUT_PROPERTY)) {
+            return runStreaming(file, outputPath);
+        }
+
         ObjectMapper objectMapper = new ObjectMapper();
-        File file = new File(CheckerConstants.TESTS_PATH + filePath1);
+        String inputName = file.getName();
         ObjectInput inputData = objectMapper.readValue(file, ObjectInput.class);
 
-        ArrayNode output = objectMapper.createArrayNode();
-
-        /*
-         * TODO Implement your function here
-         *
-         * How to add output to the output array?
-         * There are multiple ways to do this, here is one example:
-         *
-         * ObjectMapper mapper = new ObjectMapper();
-         *
-         * ObjectNode objectNode = mapper.createObjectNode();
-         * objectNode.put("field_name", "field_value");
-         *
-         * ArrayNode arrayNode = mapper.createArrayNode();
-         * arrayNode.add(objectNode);
-         *
-         * output.add(arrayNode);
-         * output.add(objectNode);
-         *
-         */
-
-        InitBank initBank = new InitBank(inputData);
-        initBank.run(inputData);
-        output = initBank.getOutputArray();
-
-        ObjectWriter objectWriter = objectMapper.writerWithDefaultPrettyPrinter();
-        objectWriter.writeValue(new File(filePath2), output);
+        try (TransactionJournal journal = createJournal(inputName);
+             CommandLog commandLog = createCommandLog(inputName);
+             ExecutorService executor = createExecutor();
+             OutputSink output = createOutputSink(outputPath, objectMapper)) {
+            InitBank initBank = createInitBank(inputName, inputData, output, journal,
+                    commandLog);
+            if (executor != null) {
+                initBank.setExecutor(executor);
+            }
+            initBank.run(inputData);
+            return initBank.getBank().getCommandCount();
+        }
+    }
+
+    /**
+     * Same as {@link #action(String, String)}, but the commands are read and executed one at
+     * a time instead of deserializing the whole input file first
+     * @param filePath1 for input file
+     * @param filePath2 for output file
+     * @throws IOException in case of exceptions to reading / writing
+     */
+    public static void actionStreaming(final String filePath1,
+                                       final String filePath2) throws IOException {
+        runStreaming(new File(CheckerConstants.TESTS_PATH + filePath1), filePath2);
+    }
+
+    private static long runStreaming(final File file, final String outputPath)
+            throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        String inputName = file.getName();
+
+        try (StreamingInputReader reader = new StreamingInputReader(file, objectMapper);
+             TransactionJournal journal = createJournal(inputName);
+             CommandLog commandLog = createCommandLog(inputName);
+             ExecutorService executor = createExecutor();
+             OutputSink output = createOutputSink(outputPath, objectMapper)) {
+            InitBank initBank = createInitBank(inputName, reader.readHeader(), output,
+                    journal, commandLog);
+            if (executor != null) {
+                initBank.setExecutor(executor);
+            }
+            initBank.run(reader);
+            return initBank.getBank().getCommandCount();
+        }
+    }
+
+    /**
+     * The results are streamed to the output file, pretty printed unless the
+     * compact output property is set
+     * @param filePath the output file
+     * @param objectMapper the object mapper used to serialize the results
+     * @return the output where the commands write their results
+     * @throws IOException if the output file cannot be opened
+     */
+    private static OutputSink createOutputSink(final String filePath,
+                                               final ObjectMapper objectMapper)
+            throws IOException {
+        boolean prettyPrint = !Boolean.getBoolean(CheckerConstants.COMPACT_OUTPUT_PROPERTY);
+        return new JsonGeneratorSink(new File(filePath), objectMapper, prettyPrint);
+    }
+
+    /**
+     * The transactions are kept on the heap, unless the journal directory property is set;
+     * then they go to a memory-mapped file named after the input file in that directory
+     * @param inputName the name of the input file
+     * @return the journal of the bank
+     * @throws IOException if the journal file cannot be created
+     */
+    private static TransactionJournal createJournal(final String inputName) throws IOException {
+        String journalDir = System.getProperty(CheckerConstants.JOURNAL_DIR_PROPERTY);
+        if (journalDir == null) {
+            return new TransactionJournal();
+        }
+        Path directory = Files.createDirectories(Paths.get(journalDir));
+        return TransactionJournal.create(
+                directory.resolve(inputName + CheckerConstants.JOURNAL_EXTENSION));
+    }
+
+    /**
+     * Without the snapshot directory property the bank is created from the input; with it,
+     * the state of the bank is saved there at the end of the run and, if the load snapshot
+     * property is set too, the bank starts from the snapshot saved for the same input.
+     * With a command log, the commands it has after the state of the bank are replayed
+     * first, when recovering.
+     * @param inputName the name of the input file
+     * @param input the users and the exchange rates of the bank
+     * @param output where the commands write their results
+     * @param journal the (empty) journal of the bank
+     * @param commandLog the command log of the run or null
+     * @return the object that runs the commands
+     * @throws IOException if the snapshot or the command log cannot be read
+     */
+    private static InitBank createInitBank(final String inputName, final ObjectInput input,
+                                           final OutputSink output,
+                                           final TransactionJournal journal,
+                                           final CommandLog commandLog)
+            throws IOException {
+        InitBank initBank = createInitBank(inputName, input, output, journal);
+        if (commandLog != null) {
+            initBank.setCommandLog(commandLog);
+            if (Boolean.getBoolean(CheckerConstants.RECOVER_PROPERTY)) {
+                initBank.recover(commandLog);
+            }
+        }
+        return initBank;
+    }
+
+    private static InitBank createInitBank(final String inputName, final ObjectInput input,
+                                           final OutputSink output,
+                                           final TransactionJournal journal)
+            throws IOException {
+        String snapshotDir = System.getProperty(CheckerConstants.SNAPSHOT_DIR_PROPERTY);
+        if (snapshotDir == null) {
+            return new InitBank(input, output, journal, createRateTable());
+        }
+
+        Path directory = Files.createDirectories(Paths.get(snapshotDir));
+        Path snapshot = directory.resolve(inputName + CheckerConstants.SNAPSHOT_EXTENSION);
+        InitBank initBank;
+        if (Boolean.getBoolean(CheckerConstants.LOAD_SNAPSHOT_PROPERTY)
+                && Files.exists(snapshot)) {
+            initBank = new InitBank(BankSnapshot.read(snapshot, journal, createRateTable()),
+                    output);
+        } else {
+            initBank = new InitBank(input, output, journal, createRateTable());
+        }
+        initBank.setSnapshotFile(snapshot);
+        return initBank;
+    }
+
+    /**
+     * The rates of all the pairs of currencies are computed when the bank is created, unless
+     * the rate cache size property is set; then a pair is resolved when it is first used
+     * @return the (empty) table of the exchange rates of a bank
+     */
+    private static RateTable createRateTable() {
+        Integer cacheSize = Integer.getInteger(CheckerConstants.RATE_CACHE_SIZE_PROPERTY);
+        return cacheSize == null ? RateTable.matrix() : RateTable.cached(cacheSize);
+    }
+
+    /**
+     * No command log is kept unless the command log directory property is set; then the log
+     * is named after the input file in that directory, and it is started over unless the
+     * run recovers from it
+     * @param inputName the name of the input file
+     * @return the command log of the run or null
+     * @throws IOException if the log cannot be opened
+     */
+    private static CommandLog createCommandLog(final String inputName) throws IOException {
+        String commandLogDir = System.getProperty(CheckerConstants.COMMAND_LOG_DIR_PROPERTY);
+        if (commandLogDir == null) {
+            return null;
+        }
+        Path directory = Files.createDirectories(Paths.get(commandLogDir));
+        Path file = directory.resolve(inputName + CheckerConstants.COMMAND_LOG_EXTENSION);
+        int batchSize = Integer.getInteger(CheckerConstants.COMMAND_LOG_BATCH_PROPERTY,
+                CommandLog.DEFAULT_BATCH_SIZE);
+        if (Boolean.getBoolean(CheckerConstants.RECOVER_PROPERTY)) {
+            return CommandLog.open(file, batchSize);
+        }
+        return CommandLog.create(file, batchSize);
+    }
+
+    /**
+     * The commands run one after the other, unless the command threads property is set
+     * @return the threads the commands of a file run on or null
+     */
+    private static ExecutorService createExecutor() {
+        int threads = Integer.getInteger(CheckerConstants.COMMAND_THREADS_PROPERTY, 1);
+        return threads > 1 ? Executors.newFixedThreadPool(threads) : null;
     }
 
     /**
@@ -0,0 +1,61 @@
+package org.poo.output;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the results of a command until they can be handed, in the order of the commands, to
+ * the real output (when the commands run in parallel). The results written field by field
+ * are recorded right away, as they read the state of the bank while they are written.
+ */
+public final class BufferedSink implements OutputSink {
+    private final ObjectMapper mapper;
+    // ObjectNodes and TokenBuffers, in the order they were written
+    private final List<Object> results;
+
+    public BufferedSink(final ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.results = new ArrayList<>(1);
+    }
+
+    @Override
+    public void write(final ObjectNode result) {
+        results.add(result);
+    }
+
+    @Override
+    public void write(final ResultWriter result) {
+        TokenBuffer buffer = new TokenBuffer(mapper, false);
+        try {
+            result.writeTo(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        results.add(buffer);
+    }
+
+    /**
+     * Hands the results over to another output, in the order they were written
+     * @param output the output the results are written to
+     */
+    public void writeTo(final OutputSink output) {
+        for (Object result : results) {
+            if (result instanceof TokenBuffer buffer) {
+                output.write(buffer::serialize);
+            } else {
+                output.write((ObjectNode) result);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        // nothing to release, the results are handed over by writeTo
+    }
+}
@@ -0,0 +1,79 @@
+package org.poo.output;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Streams every command result straight to the output file, as an element of a JSON array,
+ * so the results are never accumulated in memory
+ */
+public final class JsonGeneratorSink implements OutputSink {
+    private final JsonGenerator generator;
+    private final ObjectWriter writer;
+
+    /**
+     * @param file the output file
+     * @param mapper the object mapper used to serialize the results
+     * @param prettyPrint false for compact output (faster and smaller)
+     * @throws IOException if the output file cannot be opened
+     */
+    public JsonGeneratorSink(final File file, final ObjectMapper mapper,
+                             final boolean prettyPrint) throws IOException {
+        this(mapper.getFactory().createGenerator(file, JsonEncoding.UTF8), mapper, prettyPrint);
+    }
+
+    /**
+     * @param out the stream the results are written to (closed together with the sink)
+     * @param mapper the object mapper used to serialize the results
+     * @param prettyPrint false for compact output (faster and smaller)
+     * @throws IOException if the output cannot be started
+     */
+    public JsonGeneratorSink(final OutputStream out, final ObjectMapper mapper,
+                             final boolean prettyPrint) throws IOException {
+        this(mapper.getFactory().createGenerator(out, JsonEncoding.UTF8), mapper, prettyPrint);
+    }
+
+    private JsonGeneratorSink(final JsonGenerator generator, final ObjectMapper mapper,
+                              final boolean prettyPrint) throws IOException {
+        this.generator = generator;
+        if (prettyPrint) {
+            this.generator.useDefaultPrettyPrinter();
+        }
+        // the generator is flushed by its own buffer, not after every result
+        this.writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.generator.writeStartArray();
+    }
+
+    @Override
+    public void write(final ObjectNode result) {
+        try {
+            writer.writeValue(generator, result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void write(final ResultWriter result) {
+        try {
+            result.writeTo(generator);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.writeEndArray();
+        generator.close();
+    }
+}
@@ -0,0 +1,23 @@
+package org.poo.output;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.Closeable;
+
+/**
+ * Destination of the command results; every result is handed over as soon as the command
+ * that produced it finishes
+ */
+public interface OutputSink extends Closeable {
+    /**
+     * Adds one command result to the output
+     * @param result the object node with the command result
+     */
+    void write(ObjectNode result);
+
+    /**
+     * Adds one command result to the output, written field by field
+     * @param result the writer of the command result
+     */
+    void write(ResultWriter result);
+}
@@ -0,0 +1,19 @@
+package org.poo.output;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * A command result that writes its fields straight through a generator, without building
+ * an intermediate ObjectNode
+ */
+@FunctionalInterface
+public interface ResultWriter {
+    /**
+     * Writes the whole result (one JSON object)
+     * @param generator the generator the result is written to
+     * @throws IOException if the result cannot be written
+     */
+    void writeTo(JsonGenerator generator) throws IOException;
+}
@@ -6,7 +6,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.poo.accounts.Account;
 import org.poo.bank.Bank;
 import org.poo.fileio.CommandInput;
-import org.poo.transactions.Transaction;
+import org.poo.transactions.TransactionView;
 
 public final class ClassicReport implements ReportGenerator {
     private final Bank bank;
@@ -33,11 +33,9 @@ public final class ClassicReport implements ReportGenerator {
 
         // transactions output
         ArrayNode transactionsArray = mapper.createArrayNode();
-        for (Transaction transaction : account.getTransactions()) {
-            if (transaction.getTimestamp() >= startTimestamp
-                    && transaction.getTimestamp() <= endTimestamp) {
-                transactionsArray.add(transaction.transformToAnObjectNode(mapper));
-            }
+        for (TransactionView transaction
+                : account.getTransactions().range(startTimestamp, endTimestamp)) {
+            transactionsArray.add(transaction.transformToAnObjectNode(mapper));
         }
         outputNode.set("transactions", transactionsArray);
 
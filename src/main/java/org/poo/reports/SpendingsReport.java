@@ -7,9 +7,8 @@ import org.poo.accounts.Account;
 import org.poo.bank.Bank;
 import org.poo.fileio.CommandInput;
 import org.poo.transactions.Commerciant;
-import org.poo.transactions.Transaction;
-
-import java.util.TreeMap;
+import org.poo.transactions.TransactionKind;
+import org.poo.transactions.TransactionView;
 
 public final class SpendingsReport implements ReportGenerator {
     private final Bank bank;
@@ -25,9 +24,6 @@ public final class SpendingsReport implements ReportGenerator {
         int endTimestamp = commandInput.getEndTimestamp();
         Account account = bank.getAccountWithIBAN(commandInput.getAccount());
 
-        // TreeMap for keeping commerciants ordered alphabetically by name
-        TreeMap<String, Commerciant> commerciantsMap = new TreeMap<>();
-
         if (account == null) {
             throw new Exception("Account not found");
         }
@@ -43,29 +39,18 @@ public final class SpendingsReport implements ReportGenerator {
 
         // transaction output
         ArrayNode transactionsArray = mapper.createArrayNode();
-        for (Transaction transaction : account.getTransactions()) {
-            if (transaction.getTimestamp() >= startTimestamp
-                    && transaction.getTimestamp() <= endTimestamp
-                    && transaction.getDescription().equals("Card payment")) {
+        for (TransactionView transaction
+                : account.getTransactions().range(startTimestamp, endTimestamp)) {
+            if (transaction.getKind() == TransactionKind.CARD_PAYMENT) {
                 transactionsArray.add(transaction.transformToAnObjectNode(mapper));
-
-                String commerciantName = transaction.getCommerciant();
-                double amount = transaction.getAmountPayOnline();
-
-                Commerciant commerciant = commerciantsMap.get(commerciantName);
-                if (commerciant == null) {
-                    commerciant = new Commerciant(commerciantName, amount);
-                    commerciantsMap.put(commerciantName, commerciant);
-                } else {
-                    commerciant.addAmountSpent(amount);
-                }
             }
         }
         outputNode.set("transactions", transactionsArray);
 
-        // commerciants output
+        // commerciants output, from the running totals of the account
         ArrayNode commerciantsArray = mapper.createArrayNode();
-        for (Commerciant commerciant : commerciantsMap.values()) {
+        for (Commerciant commerciant
+                : account.getSpendings().totals(startTimestamp, endTimestamp)) {
             commerciantsArray.add(commerciant.transformToObjectNode(mapper));
         }
         outputNode.set("commerciants", commerciantsArray);
@@ -0,0 +1,76 @@
+package org.poo.transactions;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks shared by all the accounts and users of a bank: a key (an IBAN or the
+ * email of the user whose history is written) is mapped to one of the stripes by its hash.
+ * <p>
+ * The stripes an operation needs are given as a bit set and always locked from the lowest to
+ * the highest, so two operations over the same accounts (sendMoney in both directions, two
+ * split payments over overlapping accounts) can never wait for each other in a cycle; keys
+ * falling on the same stripe are locked once.
+ */
+public final class AccountLocks {
+    // one bit of the set of locked stripes per stripe
+    private static final int STRIPES = Long.SIZE;
+    private static final int HASH_SPREAD = 16;
+
+    private final ReentrantLock[] locks;
+
+    public AccountLocks() {
+        this.locks = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Locks the stripes of all the keys, in the canonical order
+     * @param keys the IBANs and emails the operation reads and changes (null keys are skipped)
+     * @return the stripes that were locked, to be given to {@link #unlock(long)}
+     */
+    public long lock(final String... keys) {
+        long stripes = 0;
+        for (String key : keys) {
+            stripes |= bit(key);
+        }
+        return lockStripes(stripes);
+    }
+
+    /**
+     * Locks the stripes of two keys, the same as {@link #lock(String...)} without the array of
+     * the arguments (for a card payment, which locks its account and its user)
+     * @param first the first key (skipped if null)
+     * @param second the second key (skipped if null)
+     * @return the stripes that were locked, to be given to {@link #unlock(long)}
+     */
+    public long lock(final String first, final String second) {
+        return lockStripes(bit(first) | bit(second));
+    }
+
+    /**
+     * Unlocks the stripes locked by {@link #lock(String...)}
+     * @param stripes the stripes that were locked
+     */
+    public void unlock(final long stripes) {
+        for (long left = stripes; left != 0; left &= left - 1) {
+            locks[Long.numberOfTrailingZeros(left)].unlock();
+        }
+    }
+
+    private long lockStripes(final long stripes) {
+        for (long left = stripes; left != 0; left &= left - 1) {
+            locks[Long.numberOfTrailingZeros(left)].lock();
+        }
+        return stripes;
+    }
+
+    private static long bit(final String key) {
+        if (key == null) {
+            return 0;
+        }
+        int hash = key.hashCode();
+        return 1L << ((hash ^ (hash >>> HASH_SPREAD)) & (STRIPES - 1));
+    }
+}
@@ -1,10 +1,13 @@
 package org.poo.transactions;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.io.IOException;
+
 @Getter
 @Setter
 public class Commerciant {
@@ -36,4 +39,15 @@ public class Commerciant {
 
         return commerciantNode;
     }
+
+    /**
+     * @param generator the generator the commerciant is written to
+     * @throws IOException if the commerciant cannot be written
+     */
+    public void writeTo(final JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("commerciant", name);
+        generator.writeNumberField("total", totalAmountSpent);
+        generator.writeEndObject();
+    }
 }
@@ -0,0 +1,125 @@
+package org.poo.transactions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the rows of the journal on the heap, one primitive array per column
+ */
+final class HeapJournalStorage implements JournalStorage {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private byte[] kinds;
+    private int[] timestamps;
+    private int[] descriptions;
+    private double[] amounts;
+    private int[] firstRefs;
+    private int[] secondRefs;
+    private int[] thirdRefs;
+    private int[] rateVersions;
+    private int size;
+
+    HeapJournalStorage() {
+        this.kinds = new byte[INITIAL_CAPACITY];
+        this.timestamps = new int[INITIAL_CAPACITY];
+        this.descriptions = new int[INITIAL_CAPACITY];
+        this.amounts = new double[INITIAL_CAPACITY];
+        this.firstRefs = new int[INITIAL_CAPACITY];
+        this.secondRefs = new int[INITIAL_CAPACITY];
+        this.thirdRefs = new int[INITIAL_CAPACITY];
+        this.rateVersions = new int[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    @Override
+    public int append(final byte kind, final int timestamp, final int description,
+                      final double amount, final int firstRef, final int secondRef,
+                      final int thirdRef, final int rateVersion) {
+        if (size == kinds.length) {
+            grow();
+        }
+        int row = size++;
+        kinds[row] = kind;
+        timestamps[row] = timestamp;
+        descriptions[row] = description;
+        amounts[row] = amount;
+        firstRefs[row] = firstRef;
+        secondRefs[row] = secondRef;
+        thirdRefs[row] = thirdRef;
+        rateVersions[row] = rateVersion;
+        return row;
+    }
+
+    @Override
+    public void addString(final String value) {
+        // the pool of the journal is the only copy
+    }
+
+    @Override
+    public List<String> strings() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public byte kind(final int row) {
+        return kinds[row];
+    }
+
+    @Override
+    public int timestamp(final int row) {
+        return timestamps[row];
+    }
+
+    @Override
+    public int description(final int row) {
+        return descriptions[row];
+    }
+
+    @Override
+    public double amount(final int row) {
+        return amounts[row];
+    }
+
+    @Override
+    public int firstRef(final int row) {
+        return firstRefs[row];
+    }
+
+    @Override
+    public int secondRef(final int row) {
+        return secondRefs[row];
+    }
+
+    @Override
+    public int thirdRef(final int row) {
+        return thirdRefs[row];
+    }
+
+    @Override
+    public int rateVersion(final int row) {
+        return rateVersions[row];
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+
+    private void grow() {
+        int capacity = kinds.length * 2;
+        kinds = Arrays.copyOf(kinds, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        firstRefs = Arrays.copyOf(firstRefs, capacity);
+        secondRefs = Arrays.copyOf(secondRefs, capacity);
+        thirdRefs = Arrays.copyOf(thirdRefs, capacity);
+        rateVersions = Arrays.copyOf(rateVersions, capacity);
+    }
+}
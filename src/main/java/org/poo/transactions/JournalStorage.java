@@ -0,0 +1,45 @@
+package org.poo.transactions;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * Where the rows of a TransactionJournal are kept: one fixed-size record per transaction,
+ * with the strings already replaced by their ids in the string pool of the journal
+ */
+interface JournalStorage extends Closeable {
+    /**
+     * Appends one row
+     * @return the offset of the new row
+     */
+    int append(byte kind, int timestamp, int description, double amount,
+               int firstRef, int secondRef, int thirdRef, int rateVersion);
+
+    /**
+     * Called for every string added to the pool of the journal, in the order of the ids
+     */
+    void addString(String value);
+
+    /**
+     * @return the strings added by addString, in order (for a journal that is reopened)
+     */
+    List<String> strings();
+
+    int size();
+
+    byte kind(int row);
+
+    int timestamp(int row);
+
+    int description(int row);
+
+    double amount(int row);
+
+    int firstRef(int row);
+
+    int secondRef(int row);
+
+    int thirdRef(int row);
+
+    int rateVersion(int row);
+}
@@ -0,0 +1,284 @@
+package org.poo.transactions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the rows of the journal in a memory-mapped file, so the history is not limited by the
+ * heap, survives the process and is read without copying it.
+ * The file (little endian) starts with a header as large as a record (magic, version, number
+ * of rows), followed by one record per row: timestamp (int), kind (byte, then 3 unused bytes),
+ * amount (double), description, first, second and third reference, version of
+ * the exchange rates used (ints, then 4 unused bytes, so the amounts stay aligned). The file
+ * is mapped in segments of a whole number of records that are added (growing the file) as the
+ * journal grows, so a record never crosses two segments. The strings of the pool go to a second
+ * file next to it, each as its length followed by its UTF-8 bytes.
+ */
+final class MappedJournalStorage implements JournalStorage {
+    static final int MAGIC = 0x504F4F4A;
+    static final int VERSION = 5;
+    static final int RECORD_SIZE = 40;
+    static final String STRINGS_SUFFIX = ".strings";
+
+    // in records (the header counts as one)
+    private static final int SEGMENT_SHIFT = 18;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+    private static final long SEGMENT_SIZE = (long) RECORD_SIZE << SEGMENT_SHIFT;
+
+    // header
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int ROWS_OFFSET = 8;
+
+    // record
+    private static final int TIMESTAMP_OFFSET = 0;
+    private static final int KIND_OFFSET = 4;
+    private static final int AMOUNT_OFFSET = 8;
+    private static final int DESCRIPTION_OFFSET = 16;
+    private static final int FIRST_REF_OFFSET = 20;
+    private static final int SECOND_REF_OFFSET = 24;
+    private static final int THIRD_REF_OFFSET = 28;
+    private static final int RATE_VERSION_OFFSET = 32;
+
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments;
+    private final DataOutputStream stringsOutput;
+    private final List<String> loadedStrings;
+    private int size;
+
+    private MappedJournalStorage(final FileChannel channel, final Path stringsFile,
+                                 final List<String> loadedStrings) throws IOException {
+        this.channel = channel;
+        this.segments = new ArrayList<>();
+        this.stringsOutput = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(stringsFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND)));
+        this.loadedStrings = loadedStrings;
+        this.size = 0;
+    }
+
+    /**
+     * Creates an empty journal file (replacing the file if it exists)
+     * @param file the journal file
+     * @return the storage over the new file
+     * @throws IOException if the file cannot be created
+     */
+    static MappedJournalStorage create(final Path file) throws IOException {
+        Path stringsFile = stringsFile(file);
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(stringsFile);
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedJournalStorage storage = new MappedJournalStorage(channel, stringsFile,
+                new ArrayList<>());
+        MappedByteBuffer header = storage.segment(0);
+        header.putInt(MAGIC_OFFSET, MAGIC);
+        header.putInt(VERSION_OFFSET, VERSION);
+        header.putInt(ROWS_OFFSET, 0);
+        return storage;
+    }
+
+    /**
+     * Opens a journal file written before, to read its rows and to append after them
+     * @param file the journal file
+     * @return the storage over the file
+     * @throws IOException if the file cannot be read or is not a journal
+     */
+    static MappedJournalStorage open(final Path file) throws IOException {
+        Path stringsFile = stringsFile(file);
+        List<String> strings = readStrings(stringsFile);
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (channel.size() < RECORD_SIZE) {
+            channel.close();
+            throw new IOException("Not a transaction journal: " + file);
+        }
+        MappedJournalStorage storage = new MappedJournalStorage(channel, stringsFile, strings);
+        MappedByteBuffer header = storage.segment(0);
+        if (header.getInt(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION) {
+            storage.close();
+            throw new IOException("Not a transaction journal: " + file);
+        }
+        storage.size = header.getInt(ROWS_OFFSET);
+        if (storage.size > 0) {
+            storage.segment(record(storage.size - 1));
+        }
+        return storage;
+    }
+
+    /**
+     * @param file the journal file
+     * @return the file that holds the strings of the journal
+     */
+    static Path stringsFile(final Path file) {
+        return file.resolveSibling(file.getFileName() + STRINGS_SUFFIX);
+    }
+
+    @Override
+    public int append(final byte kind, final int timestamp, final int description,
+                      final double amount, final int firstRef, final int secondRef,
+                      final int thirdRef, final int rateVersion) {
+        int row = size;
+        MappedByteBuffer segment = segment(record(row));
+        int offset = offsetOf(row);
+
+        segment.putInt(offset + TIMESTAMP_OFFSET, timestamp);
+        segment.put(offset + KIND_OFFSET, kind);
+        segment.putDouble(offset + AMOUNT_OFFSET, amount);
+        segment.putInt(offset + DESCRIPTION_OFFSET, description);
+        segment.putInt(offset + FIRST_REF_OFFSET, firstRef);
+        segment.putInt(offset + SECOND_REF_OFFSET, secondRef);
+        segment.putInt(offset + THIRD_REF_OFFSET, thirdRef);
+        segment.putInt(offset + RATE_VERSION_OFFSET, rateVersion);
+
+        // the row only counts once it is fully written
+        size++;
+        segments.get(0).putInt(ROWS_OFFSET, size);
+        return row;
+    }
+
+    @Override
+    public void addString(final String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        try {
+            stringsOutput.writeInt(bytes.length);
+            stringsOutput.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public List<String> strings() {
+        return loadedStrings;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public byte kind(final int row) {
+        return segmentOf(row).get(offsetOf(row) + KIND_OFFSET);
+    }
+
+    @Override
+    public int timestamp(final int row) {
+        return segmentOf(row).getInt(offsetOf(row) + TIMESTAMP_OFFSET);
+    }
+
+    @Override
+    public int description(final int row) {
+        return segmentOf(row).getInt(offsetOf(row) + DESCRIPTION_OFFSET);
+    }
+
+    @Override
+    public double amount(final int row) {
+        return segmentOf(row).getDouble(offsetOf(row) + AMOUNT_OFFSET);
+    }
+
+    @Override
+    public int firstRef(final int row) {
+        return segmentOf(row).getInt(offsetOf(row) + FIRST_REF_OFFSET);
+    }
+
+    @Override
+    public int secondRef(final int row) {
+        return segmentOf(row).getInt(offsetOf(row) + SECOND_REF_OFFSET);
+    }
+
+    @Override
+    public int thirdRef(final int row) {
+        return segmentOf(row).getInt(offsetOf(row) + THIRD_REF_OFFSET);
+    }
+
+    @Override
+    public int rateVersion(final int row) {
+        return segmentOf(row).getInt(offsetOf(row) + RATE_VERSION_OFFSET);
+    }
+
+    /**
+     * Writes the mapped segments and the strings to the disk and closes the files
+     * @throws IOException if the files cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try (stringsOutput; channel) {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+            stringsOutput.flush();
+        }
+    }
+
+    /**
+     * @return the index of the record of the row in the file (the header comes first)
+     */
+    private static long record(final int row) {
+        return row + 1L;
+    }
+
+    private MappedByteBuffer segmentOf(final int row) {
+        return segments.get((int) (record(row) >>> SEGMENT_SHIFT));
+    }
+
+    private static int offsetOf(final int row) {
+        return (int) (record(row) & SEGMENT_MASK) * RECORD_SIZE;
+    }
+
+    /**
+     * @return the segment that holds the record, mapping the segments up to it if needed
+     */
+    private MappedByteBuffer segment(final long recordIndex) {
+        int index = (int) (recordIndex >>> SEGMENT_SHIFT);
+        try {
+            while (segments.size() <= index) {
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE,
+                        segments.size() * SEGMENT_SIZE, SEGMENT_SIZE);
+                segment.order(ByteOrder.LITTLE_ENDIAN);
+                segments.add(segment);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return segments.get(index);
+    }
+
+    private static List<String> readStrings(final Path stringsFile) throws IOException {
+        List<String> strings = new ArrayList<>();
+        if (!Files.exists(stringsFile)) {
+            return strings;
+        }
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(stringsFile)))) {
+            while (true) {
+                int length;
+                try {
+                    length = input.readInt();
+                } catch (EOFException e) {
+                    return strings;
+                }
+                byte[] bytes = new byte[length];
+                input.readFully(bytes);
+                strings.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.poo.transactions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The card payments of an account, per commerciant, in the order they were made. A range of
+ * timestamps is found with two binary searches (commands come in timestamp order; if a payment
+ * ever comes out of order, the payments of that commerciant are filtered one by one instead)
+ * and its amounts are added in the order of the payments, so the totals are rounded exactly
+ * as when they are added while walking the history of the account.
+ */
+public final class SpendingsIndex {
+    // TreeMap for keeping commerciants ordered alphabetically by name
+    private final Map<String, Spendings> spendings;
+
+    public SpendingsIndex() {
+        this.spendings = new TreeMap<>();
+    }
+
+    /**
+     * @param commerciant the commerciant that was paid
+     * @param timestamp the timestamp of the payment
+     * @param amount the amount paid, in the currency of the account
+     */
+    public void addPayment(final String commerciant, final int timestamp, final double amount) {
+        spendings.computeIfAbsent(commerciant, name -> new Spendings())
+                .add(timestamp, amount);
+    }
+
+    /**
+     * @param startTimestamp the first timestamp of the range (inclusive)
+     * @param endTimestamp the last timestamp of the range (inclusive)
+     * @return the commerciants paid in the range with their totals, ordered by name
+     */
+    public List<Commerciant> totals(final int startTimestamp, final int endTimestamp) {
+        List<Commerciant> commerciants = new ArrayList<>();
+        for (Map.Entry<String, Spendings> entry : spendings.entrySet()) {
+            Double total = entry.getValue().total(startTimestamp, endTimestamp);
+            if (total != null) {
+                commerciants.add(new Commerciant(entry.getKey(), total));
+            }
+        }
+        return commerciants;
+    }
+
+    /**
+     * The payments of one commerciant, in the order they were made
+     */
+    private static final class Spendings {
+        private static final int INITIAL_CAPACITY = 4;
+
+        private int[] timestamps;
+        private double[] amounts;
+        private int size;
+        private boolean sorted;
+
+        Spendings() {
+            this.timestamps = new int[INITIAL_CAPACITY];
+            this.amounts = new double[INITIAL_CAPACITY];
+            this.size = 0;
+            this.sorted = true;
+        }
+
+        void add(final int timestamp, final double amount) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                amounts = Arrays.copyOf(amounts, size * 2);
+            }
+            if (size > 0 && timestamp < timestamps[size - 1]) {
+                sorted = false;
+            }
+            timestamps[size] = timestamp;
+            amounts[size] = amount;
+            size++;
+        }
+
+        /**
+         * @return the total paid between the timestamps (inclusive), added in the order of
+         * the payments, or null if nothing was paid then
+         */
+        Double total(final int startTimestamp, final int endTimestamp) {
+            int from = 0;
+            int to = size;
+            if (sorted) {
+                from = firstAfter(startTimestamp - 1L);
+                to = firstAfter(endTimestamp);
+            }
+
+            double total = 0;
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (timestamps[i] >= startTimestamp && timestamps[i] <= endTimestamp) {
+                    // the first amount starts the total, as in the report before the index
+                    total = count == 0 ? amounts[i] : total + amounts[i];
+                    count++;
+                }
+            }
+            return count == 0 ? null : total;
+        }
+
+        /**
+         * @return the position of the first payment with the timestamp greater than the value
+         */
+        private int firstAfter(final long value) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (timestamps[middle] <= value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
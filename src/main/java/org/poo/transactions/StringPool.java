@@ -0,0 +1,114 @@
+package org.poo.transactions;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives every distinct string a small id, so that the transaction columns store ids instead of
+ * references to (possibly equal but distinct) strings.
+ * Only the strings that repeat a lot (descriptions, commerciants, IBANs...) are interned; the
+ * free-form ones (like error messages) are added with an id of their own, so the pool never
+ * keeps them in its map.
+ */
+public final class StringPool {
+    public static final int NONE = -1;
+
+    private final Map<String, Integer> ids;
+    private final List<String> values;
+
+    public StringPool() {
+        this.ids = new HashMap<>();
+        this.values = new ArrayList<>();
+    }
+
+    /**
+     * @param value the string to be interned (may be null)
+     * @return the id of the string or NONE if the string is null
+     */
+    public int intern(final String value) {
+        if (value == null) {
+            return NONE;
+        }
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = values.size();
+            ids.put(value, id);
+            values.add(value);
+        }
+        return id;
+    }
+
+    /**
+     * @param value the string to be added without interning it (may be null)
+     * @return the new id of the string or NONE if the string is null
+     */
+    public int add(final String value) {
+        if (value == null) {
+            return NONE;
+        }
+        values.add(value);
+        return values.size() - 1;
+    }
+
+    /**
+     * Lets intern return the given id for its string, unless the string already has one
+     * (for a pool that is filled again with add, in the order of the ids)
+     * @param id the id of an interned string or NONE
+     */
+    public void reuse(final int id) {
+        if (id != NONE) {
+            ids.putIfAbsent(values.get(id), id);
+        }
+    }
+
+    /**
+     * @param id the id of the string
+     * @return the string with the given id or null if the id is NONE
+     */
+    public String get(final int id) {
+        return id == NONE ? null : values.get(id);
+    }
+
+    /**
+     * @return the number of strings in the pool
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Writes the strings of the pool in the order of their ids
+     * @param output where the strings are written
+     * @throws IOException if the strings cannot be written
+     */
+    public void writeTo(final DataOutput output) throws IOException {
+        output.writeInt(values.size());
+        for (String value : values) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    /**
+     * @param input where the strings were written by writeTo
+     * @return the strings, in the order of their ids
+     * @throws IOException if the strings cannot be read
+     */
+    public static List<String> readFrom(final DataInput input) throws IOException {
+        int size = input.readInt();
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            byte[] bytes = new byte[input.readInt()];
+            input.readFully(bytes);
+            strings.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+}
@@ -1,16 +1,18 @@
 package org.poo.transactions;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.Getter;
 import org.poo.accounts.Account;
 
 import java.util.List;
 
+/**
+ * An event to be recorded, as built by the commands; it is appended to the journal of the bank
+ * and read back through a TransactionView
+ */
 @Getter
 public final class Transaction {
     // createAccount + common for all
+    private final TransactionKind kind;
     private final String description;
     private final int timestamp;
 
@@ -19,7 +21,6 @@ public final class Transaction {
     private final Account toAccount;
     private final double amountSender;
     private final double amountReceiver;
-    private final String transferType;
 
     // createCard + deleteCard + createOneTimeCard
     private final String cardNumber;
@@ -36,14 +37,18 @@ public final class Transaction {
     private final List<String> involvedAccounts;
     private final String error;
 
+    // the version of the exchange rates the amounts were converted with (transfers, card and
+    // split payments)
+    private final int rateVersion;
+
     // private constructor for forcing the use of the Builder
     private Transaction(final TransactionBuilder builder) {
+        this.kind = builder.kind;
         this.description = builder.description;
         this.fromAccount = builder.fromAccount;
         this.toAccount = builder.toAccount;
         this.amountSender = builder.amountSender;
         this.amountReceiver = builder.amountReceiver;
-        this.transferType = builder.transferType;
         this.timestamp = builder.timestamp;
         this.cardNumber = builder.cardNumber;
         this.cardHolderEmail = builder.cardHolderEmail;
@@ -54,9 +59,11 @@ public final class Transaction {
         this.amountSplitted = builder.amountSplitted;
         this.involvedAccounts = builder.involvedAccounts;
         this.error = builder.error;
+        this.rateVersion = builder.rateVersion;
     }
 
     public static final class TransactionBuilder {
+        private TransactionKind kind;
         private String description;
         private Account fromAccount;
         private Account toAccount;
@@ -72,13 +79,13 @@ public final class Transaction {
         private double amountSplitted;
         private List<String> involvedAccounts;
         private String error;
-        private String transferType;
+        private int rateVersion = TransactionJournal.NO_RATE_VERSION;
 
         /**
-         * @param argTransferType the type of the transaction ("sent" or "received")
+         * @param argKind what the transaction records (decides which fields it has)
          */
-        public TransactionBuilder setTransferType(final String argTransferType) {
-            this.transferType = argTransferType;
+        public TransactionBuilder setKind(final TransactionKind argKind) {
+            this.kind = argKind;
             return this;
         }
 
@@ -150,7 +157,8 @@ public final class Transaction {
         }
 
         /**
-         * @param argAmountPayOnline the total amount of money for the payOnline command
+         * @param argAmountPayOnline the total amount of money for the payOnline command, in
+         *                           the currency of the account
          */
         public TransactionBuilder setAmountPayOnline(final double argAmountPayOnline) {
             this.amountPayOnline = argAmountPayOnline;
@@ -182,8 +190,8 @@ public final class Transaction {
         }
 
         /**
-         * @param argAmountSender the amount of money sent in sendMoney command (converted to
-         *                        the sender's currency)
+         * @param argAmountSender the amount of money sent in sendMoney command, in the
+         *                        sender's currency
          */
         public TransactionBuilder setAmountSender(final double argAmountSender) {
             this.amountSender = argAmountSender;
@@ -191,14 +199,23 @@ public final class Transaction {
         }
 
         /**
-         * @param argAmountReceiver the amount of money received in sendMoney command (converted
-         *                          to the receiver's currency)
+         * @param argAmountReceiver the amount of money received in sendMoney command, in
+         *                          the receiver's currency
          */
         public TransactionBuilder setAmountReceiver(final double argAmountReceiver) {
             this.amountReceiver = argAmountReceiver;
             return this;
         }
 
+        /**
+         * @param argRateVersion the version of the exchange rates the amounts were converted
+         *                       with (see RateTable.getVersion)
+         */
+        public TransactionBuilder setRateVersion(final int argRateVersion) {
+            this.rateVersion = argRateVersion;
+            return this;
+        }
+
         /**
          * @param argTimestamp the timestamp of the transaction
          */
@@ -209,8 +226,12 @@ public final class Transaction {
 
         /**
          * @return the Transaction object
+         * @throws IllegalStateException if the kind of the transaction was not set
          */
         public Transaction build() {
+            if (kind == null) {
+                throw new IllegalStateException("The kind of the transaction must be set");
+            }
             return new Transaction(this);
         }
     }
@@ -223,84 +244,21 @@ public final class Transaction {
         if (amountSender <= 0 || fromAccount == null || toAccount == null) {
             return;
         }
-        if (fromAccount.getBalance() < amountSender) {
+        // checked and taken in one atomic step, a card payment does not wait for the locks
+        if (!fromAccount.tryWithdraw(amountSender)) {
             throw new Exception("Insufficient funds");
         }
-
-        fromAccount.withdraw(amountSender);
         toAccount.deposit(amountReceiver);
     }
 
     /**
-     * Transforms the transaction into an ObjectNode
-     * @param mapper the ObjectMapper used to create the ObjectNode
-     * @return the ObjectNode
+     * @return "sent" or "received" for a sendMoney transaction and null otherwise
      */
-    public ObjectNode transformToAnObjectNode(final ObjectMapper mapper) {
-        ObjectNode objectNode = mapper.createObjectNode();
-
-        objectNode.put("timestamp", timestamp);
-        objectNode.put("description", description);
-
-        // sendMoney
-        if (fromAccount != null) {
-            objectNode.put("senderIBAN", fromAccount.getIban());
-        }
-        if (toAccount != null) {
-            objectNode.put("receiverIBAN", toAccount.getIban());
-        }
-        if (transferType != null) {
-            objectNode.put("transferType", transferType);
-        }
-        if (transferType != null && transferType.equals("sent")) {
-            if (amountSender > 0 && fromAccount != null) {
-                String amountString = String.format(amountSender + " " + fromAccount.getCurrency());
-                objectNode.put("amount", amountString);
-            }
-        } else if (transferType != null && transferType.equals("received")) {
-            if (amountReceiver > 0 && toAccount != null) {
-                String amountString = String.format(amountReceiver + " " + toAccount.getCurrency());
-                objectNode.put("amount", amountString);
-            }
-        }
-
-        // createCard + deleteCard + createOneTimeCard
-        if (cardNumber != null) {
-            objectNode.put("card", cardNumber);
-        }
-        if (cardHolderEmail != null) {
-            objectNode.put("cardHolder", cardHolderEmail);
-        }
-        if (accountIBAN != null) {
-            objectNode.put("account", accountIBAN);
-        }
-
-        // payOnline
-        if (amountPayOnline > 0) {
-            objectNode.put("amount", amountPayOnline);
-        }
-        if (commerciant != null) {
-            objectNode.put("commerciant", commerciant);
-        }
-
-        // splitTransaction
-        if (currency != null) {
-            objectNode.put("currency", currency);
-        }
-        if (amountSplitted > 0) {
-            objectNode.put("amount", amountSplitted);
-        }
-        if (error != null) {
-            objectNode.put("error", error);
-        }
-        if (involvedAccounts != null && !involvedAccounts.isEmpty()) {
-            ArrayNode accountsArray = mapper.createArrayNode();
-            for (String account : involvedAccounts) {
-                accountsArray.add(account);
-            }
-            objectNode.set("involvedAccounts", accountsArray);
-        }
-
-        return objectNode;
+    public String getTransferType() {
+        return switch (kind) {
+            case TRANSFER_SENT -> "sent";
+            case TRANSFER_RECEIVED -> "received";
+            default -> null;
+        };
     }
 }
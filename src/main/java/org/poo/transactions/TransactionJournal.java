@@ -0,0 +1,422 @@
+package org.poo.transactions;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The append-only journal of a bank: every transaction is stored once, as one row of primitive
+ * columns with every string replaced by its id in a pool, even if it appears in the history of
+ * several users and accounts. The histories are TransactionLogs that only keep the offsets
+ * (rows) of their transactions in the journal, so the memory grows with the number of events
+ * and not with the number of events times the number of holders.
+ * The rows are kept on the heap or, for a journal created with {@link #create(Path)}, in a
+ * memory-mapped file.
+ * The journal is shared by the commands of all the users, which can run on several threads
+ * at once; while they do, it is appended to and read under its own lock.
+ * The meaning of the reference columns depends on the kind of the transaction:
+ * <ul>
+ *     <li>transfers: sender IBAN, receiver IBAN, currency of the amount</li>
+ *     <li>card created / destroyed: card number, card holder, account IBAN</li>
+ *     <li>card payment: commerciant</li>
+ *     <li>split payment: currency, error, involved accounts (joined in one string)</li>
+ * </ul>
+ * The error and the involved accounts of a split payment are not interned (see StringPool),
+ * only shared by the rows of the same command.
+ * The transactions that convert an amount (transfers, card and split payments) also keep the
+ * version of the exchange rates they used (see RateTable.getVersion), the others
+ * NO_RATE_VERSION.
+ */
+public final class TransactionJournal implements Closeable {
+    public static final String CARD_PAYMENT_DESCRIPTION = "Card payment";
+    public static final int NO_RATE_VERSION = -1;
+    private static final TransactionKind[] KINDS = TransactionKind.values();
+    private static final String ACCOUNTS_SEPARATOR = ",";
+
+    private final JournalStorage storage;
+    private final int[] kindCounts;
+    private final StringPool strings;
+    // the rows of one split payment share the same error and list of accounts
+    private String lastError;
+    private int lastErrorId;
+    private List<String> lastAccounts;
+    private int lastAccountsId;
+    private volatile boolean concurrent;
+
+    public TransactionJournal() {
+        this(new HeapJournalStorage());
+    }
+
+    private TransactionJournal(final JournalStorage storage) {
+        this.storage = storage;
+        this.kindCounts = new int[KINDS.length];
+        this.strings = new StringPool();
+        this.lastErrorId = StringPool.NONE;
+        this.lastAccountsId = StringPool.NONE;
+
+        // a journal that is reopened already has rows and strings
+        for (String value : storage.strings()) {
+            strings.add(value);
+        }
+        for (int row = 0; row < storage.size(); row++) {
+            kindCounts[storage.kind(row)]++;
+            reuseInterned(row);
+        }
+    }
+
+    /**
+     * Creates a journal kept in a memory-mapped file (replacing the file if it exists)
+     * @param file the file of the journal
+     * @return the journal
+     * @throws IOException if the file cannot be created
+     */
+    public static TransactionJournal create(final Path file) throws IOException {
+        return new TransactionJournal(MappedJournalStorage.create(file));
+    }
+
+    /**
+     * Opens a journal file written by an earlier run, to read its transactions and to append
+     * after them
+     * @param file the file of the journal
+     * @return the journal
+     * @throws IOException if the file cannot be read or is not a journal
+     */
+    public static TransactionJournal open(final Path file) throws IOException {
+        return new TransactionJournal(MappedJournalStorage.open(file));
+    }
+
+    /**
+     * Appends the transaction to the journal
+     * @param transaction the transaction to be appended
+     * @return the offset of the transaction in the journal
+     */
+    public int append(final Transaction transaction) {
+        if (concurrent) {
+            synchronized (this) {
+                return appendRow(transaction);
+            }
+        }
+        return appendRow(transaction);
+    }
+
+    /**
+     * Appends a card payment straight from its values, the same row append(Transaction) writes
+     * for a CARD_PAYMENT, without building a Transaction first (card payments are most of the
+     * commands, so their path allocates nothing but the row)
+     * @param timestamp the timestamp of the payment
+     * @param amount the amount paid, in the currency of the account
+     * @param commerciant the commerciant that was paid
+     * @param rateVersion the version of the exchange rates the amount was converted with
+     * @return the offset of the payment in the journal
+     */
+    public int appendCardPayment(final int timestamp, final double amount,
+                                 final String commerciant, final int rateVersion) {
+        if (concurrent) {
+            synchronized (this) {
+                return appendCardPaymentRow(timestamp, amount, commerciant, rateVersion);
+            }
+        }
+        return appendCardPaymentRow(timestamp, amount, commerciant, rateVersion);
+    }
+
+    /**
+     * While set, the journal is appended to and read under its lock, as commands of several
+     * users are running at once; the caller sets it before starting the threads and clears it
+     * after they all finished (the flag is volatile, so a pooled thread that is already running
+     * sees the change too)
+     * @param argConcurrent true while several threads use the journal
+     */
+    public void setConcurrent(final boolean argConcurrent) {
+        this.concurrent = argConcurrent;
+    }
+
+    private int appendRow(final Transaction transaction) {
+        TransactionKind kind = transaction.getKind();
+        double amount = 0;
+        int firstRef = StringPool.NONE;
+        int secondRef = StringPool.NONE;
+        int thirdRef = StringPool.NONE;
+
+        switch (kind) {
+            case TRANSFER_SENT, TRANSFER_RECEIVED -> {
+                boolean sent = kind == TransactionKind.TRANSFER_SENT;
+                amount = sent ? transaction.getAmountSender() : transaction.getAmountReceiver();
+                firstRef = intern(transaction.getFromAccount().getIban());
+                secondRef = intern(transaction.getToAccount().getIban());
+                thirdRef = intern(sent ? transaction.getFromAccount().getCurrency()
+                        : transaction.getToAccount().getCurrency());
+            }
+            case CARD_CREATED, CARD_DESTROYED -> {
+                firstRef = intern(transaction.getCardNumber());
+                secondRef = intern(transaction.getCardHolderEmail());
+                thirdRef = intern(transaction.getAccountIBAN());
+            }
+            case CARD_PAYMENT -> {
+                amount = transaction.getAmountPayOnline();
+                firstRef = intern(transaction.getCommerciant());
+            }
+            case SPLIT_PAYMENT, SPLIT_PAYMENT_FAILED -> {
+                amount = transaction.getAmountSplitted();
+                firstRef = intern(transaction.getCurrency());
+                secondRef = addError(transaction.getError());
+                thirdRef = addAccounts(transaction.getInvolvedAccounts());
+            }
+            default -> {
+                // only the description
+            }
+        }
+
+        int row = storage.append((byte) kind.ordinal(), transaction.getTimestamp(),
+                intern(transaction.getDescription()), amount, firstRef, secondRef, thirdRef,
+                transaction.getRateVersion());
+        kindCounts[kind.ordinal()]++;
+        return row;
+    }
+
+    private int appendCardPaymentRow(final int timestamp, final double amount,
+                                     final String commerciant, final int rateVersion) {
+        int row = storage.append((byte) TransactionKind.CARD_PAYMENT.ordinal(), timestamp,
+                intern(CARD_PAYMENT_DESCRIPTION), amount, intern(commerciant),
+                StringPool.NONE, StringPool.NONE, rateVersion);
+        kindCounts[TransactionKind.CARD_PAYMENT.ordinal()]++;
+        return row;
+    }
+
+    /**
+     * @param row the offset of the transaction
+     * @return a view over the transaction
+     */
+    public TransactionView view(final int row) {
+        return new TransactionView(this, row);
+    }
+
+    /**
+     * @return the number of transactions in the journal
+     */
+    public int size() {
+        return storage.size();
+    }
+
+    /**
+     * @param kind the kind of transactions to be counted
+     * @return the number of transactions of the given kind in the journal
+     */
+    public int count(final TransactionKind kind) {
+        return kindCounts[kind.ordinal()];
+    }
+
+    /**
+     * Writes the strings and the rows of the journal (for a snapshot of the bank)
+     * @param output where the journal is written
+     * @throws IOException if the journal cannot be written
+     */
+    public void writeTo(final DataOutput output) throws IOException {
+        strings.writeTo(output);
+
+        int size = storage.size();
+        output.writeInt(size);
+        for (int row = 0; row < size; row++) {
+            output.writeByte(storage.kind(row));
+            output.writeInt(storage.timestamp(row));
+            output.writeInt(storage.description(row));
+            output.writeDouble(storage.amount(row));
+            output.writeInt(storage.firstRef(row));
+            output.writeInt(storage.secondRef(row));
+            output.writeInt(storage.thirdRef(row));
+            output.writeInt(storage.rateVersion(row));
+        }
+    }
+
+    /**
+     * Reads the strings and the rows written by writeTo into this journal, which must be
+     * empty, so the offsets of the rows stay the same
+     * @param input where the journal is read from
+     * @throws IOException if the journal cannot be read or this journal is not empty
+     */
+    public void readFrom(final DataInput input) throws IOException {
+        if (storage.size() != 0 || strings.size() != 0) {
+            throw new IOException("A journal can only be read into an empty journal");
+        }
+
+        for (String value : StringPool.readFrom(input)) {
+            add(value);
+        }
+
+        int size = input.readInt();
+        for (int row = 0; row < size; row++) {
+            byte kind = input.readByte();
+            int offset = storage.append(kind, input.readInt(), input.readInt(),
+                    input.readDouble(), input.readInt(), input.readInt(), input.readInt(),
+                    input.readInt());
+            kindCounts[kind]++;
+            reuseInterned(offset);
+        }
+    }
+
+    /**
+     * Writes a journal kept in a file to the disk and closes it
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        storage.close();
+    }
+
+    TransactionKind kind(final int row) {
+        if (concurrent) {
+            synchronized (this) {
+                return KINDS[storage.kind(row)];
+            }
+        }
+        return KINDS[storage.kind(row)];
+    }
+
+    int timestamp(final int row) {
+        if (concurrent) {
+            synchronized (this) {
+                return storage.timestamp(row);
+            }
+        }
+        return storage.timestamp(row);
+    }
+
+    String description(final int row) {
+        return string(row, Column.DESCRIPTION);
+    }
+
+    double amount(final int row) {
+        if (concurrent) {
+            synchronized (this) {
+                return storage.amount(row);
+            }
+        }
+        return storage.amount(row);
+    }
+
+    int rateVersion(final int row) {
+        if (concurrent) {
+            synchronized (this) {
+                return storage.rateVersion(row);
+            }
+        }
+        return storage.rateVersion(row);
+    }
+
+    String firstRef(final int row) {
+        return string(row, Column.FIRST_REF);
+    }
+
+    String secondRef(final int row) {
+        return string(row, Column.SECOND_REF);
+    }
+
+    String thirdRef(final int row) {
+        return string(row, Column.THIRD_REF);
+    }
+
+    List<String> accountList(final int row) {
+        if (concurrent) {
+            synchronized (this) {
+                return decodeAccountList(row);
+            }
+        }
+        return decodeAccountList(row);
+    }
+
+    /**
+     * Reads a string column of the row and the string it refers to, both in the same critical
+     * section when the journal is used by several threads, so an append (or the storage
+     * growing) never shows a row whose string is not there yet
+     */
+    private String string(final int row, final Column column) {
+        if (concurrent) {
+            synchronized (this) {
+                return strings.get(column.id(storage, row));
+            }
+        }
+        return strings.get(column.id(storage, row));
+    }
+
+    private List<String> decodeAccountList(final int row) {
+        int id = storage.thirdRef(row);
+        if (id == StringPool.NONE) {
+            return null;
+        }
+        String accounts = strings.get(id);
+        return accounts.isEmpty() ? List.of() : List.of(accounts.split(ACCOUNTS_SEPARATOR));
+    }
+
+    /**
+     * Interns the string, passing it to the storage if it is new
+     */
+    private int intern(final String value) {
+        int known = strings.size();
+        int id = strings.intern(value);
+        if (strings.size() > known) {
+            storage.addString(value);
+        }
+        return id;
+    }
+
+    /**
+     * Adds the string without interning it, passing it to the storage
+     */
+    private int add(final String value) {
+        int id = strings.add(value);
+        if (id != StringPool.NONE) {
+            storage.addString(value);
+        }
+        return id;
+    }
+
+    private int addError(final String error) {
+        if (error != lastError) {
+            lastError = error;
+            lastErrorId = add(error);
+        }
+        return lastErrorId;
+    }
+
+    private int addAccounts(final List<String> accounts) {
+        if (accounts != lastAccounts) {
+            lastAccounts = accounts;
+            lastAccountsId = accounts == null ? StringPool.NONE
+                    : add(String.join(ACCOUNTS_SEPARATOR, accounts));
+        }
+        return lastAccountsId;
+    }
+
+    /**
+     * Lets the pool intern again the strings of a row that was read back, except the error
+     * and the involved accounts of a split payment
+     */
+    private void reuseInterned(final int row) {
+        strings.reuse(storage.description(row));
+        strings.reuse(storage.firstRef(row));
+        TransactionKind kind = KINDS[storage.kind(row)];
+        if (kind != TransactionKind.SPLIT_PAYMENT
+                && kind != TransactionKind.SPLIT_PAYMENT_FAILED) {
+            strings.reuse(storage.secondRef(row));
+            strings.reuse(storage.thirdRef(row));
+        }
+    }
+
+    /**
+     * The columns of a row that refer to a string of the pool
+     */
+    private enum Column {
+        DESCRIPTION, FIRST_REF, SECOND_REF, THIRD_REF;
+
+        int id(final JournalStorage rows, final int row) {
+            return switch (this) {
+                case DESCRIPTION -> rows.description(row);
+                case FIRST_REF -> rows.firstRef(row);
+                case SECOND_REF -> rows.secondRef(row);
+                case THIRD_REF -> rows.thirdRef(row);
+            };
+        }
+    }
+}
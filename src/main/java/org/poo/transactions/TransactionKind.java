@@ -0,0 +1,33 @@
+package org.poo.transactions;
+
+/**
+ * What a transaction records; it decides which fields the transaction has, so reports and
+ * serializers switch on it instead of comparing descriptions
+ */
+public enum TransactionKind {
+    // addAccount
+    ACCOUNT_CREATED,
+    // deleteAccount with funds remaining
+    ACCOUNT_NOT_DELETED,
+    // createCard + createOneTimeCard + a one-time card regenerated after a payment
+    CARD_CREATED,
+    // deleteCard + a one-time card used for a payment
+    CARD_DESTROYED,
+    // payOnline
+    CARD_PAYMENT,
+    // payOnline with a frozen card
+    FROZEN_CARD_PAYMENT,
+    // payOnline or sendMoney without enough money
+    INSUFFICIENT_FUNDS,
+    // checkCardStatus
+    CARD_FROZEN,
+    CARD_WARNING,
+    // sendMoney, as seen by the sender and by the receiver
+    TRANSFER_SENT,
+    TRANSFER_RECEIVED,
+    // splitPayment
+    SPLIT_PAYMENT,
+    SPLIT_PAYMENT_FAILED,
+    // changeInterestRate
+    INTEREST_RATE_CHANGED
+}
@@ -0,0 +1,184 @@
+package org.poo.transactions;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The history of a user or of an account: an index with the offsets of its transactions in the
+ * journal of the bank, in the order they were added.
+ * Commands come in timestamp order, so the timestamps are normally non-decreasing and a range
+ * of them is found with two binary searches; if a transaction ever comes out of order the log
+ * falls back to filtering every transaction, so the result is the same either way.
+ */
+public final class TransactionLog implements Iterable<TransactionView> {
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int[] NO_ROWS = new int[0];
+
+    private final TransactionJournal journal;
+    private int[] rows;
+    private int size;
+    private boolean sorted;
+
+    public TransactionLog(final TransactionJournal journal) {
+        this.journal = journal;
+        this.rows = NO_ROWS;
+        this.size = 0;
+        this.sorted = true;
+    }
+
+    /**
+     * Appends the transaction to the journal and adds its offset at the end of the log
+     * @param transaction the transaction to be added
+     * @return the offset of the transaction in the journal, to add it to the other histories
+     */
+    public int add(final Transaction transaction) {
+        int row = journal.append(transaction);
+        addRow(row);
+        return row;
+    }
+
+    /**
+     * Appends a card payment to the journal (see {@link TransactionJournal#appendCardPayment})
+     * and adds its offset at the end of the log
+     * @param timestamp the timestamp of the payment
+     * @param amount the amount paid, in the currency of the account
+     * @param commerciant the commerciant that was paid
+     * @param rateVersion the version of the exchange rates the amount was converted with
+     * @return the offset of the payment in the journal, to add it to the other histories
+     */
+    public int addCardPayment(final int timestamp, final double amount,
+                              final String commerciant, final int rateVersion) {
+        int row = journal.appendCardPayment(timestamp, amount, commerciant, rateVersion);
+        addRow(row);
+        return row;
+    }
+
+    /**
+     * Adds a transaction that is already in the journal (one added to another history, or
+     * when a bank is restored)
+     * @param row the offset of the transaction in the journal
+     */
+    public void addRow(final int row) {
+        if (size == rows.length) {
+            rows = Arrays.copyOf(rows, Math.max(INITIAL_CAPACITY, size + (size >> 1)));
+        }
+        if (size > 0 && journal.timestamp(row) < journal.timestamp(rows[size - 1])) {
+            sorted = false;
+        }
+        rows[size++] = row;
+    }
+
+    /**
+     * @param index the position of the transaction in the log
+     * @return the offset of the transaction in the journal
+     */
+    public int getRow(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return rows[index];
+    }
+
+    /**
+     * @param startTimestamp the first timestamp of the range (inclusive)
+     * @param endTimestamp the last timestamp of the range (inclusive)
+     * @return the transactions with the timestamp in the range, in the order they were added
+     */
+    public List<TransactionView> range(final int startTimestamp, final int endTimestamp) {
+        if (startTimestamp > endTimestamp) {
+            return Collections.emptyList();
+        }
+
+        if (!sorted) {
+            int[] matching = new int[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                int timestamp = journal.timestamp(rows[i]);
+                if (timestamp >= startTimestamp && timestamp <= endTimestamp) {
+                    matching[count++] = rows[i];
+                }
+            }
+            return new Slice(matching, 0, count);
+        }
+
+        return new Slice(rows, firstAfter(startTimestamp - 1L), firstAfter(endTimestamp));
+    }
+
+    /**
+     * @return the number of transactions in the log
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the log has no transactions
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index the position of the transaction in the log
+     * @return the transaction at the given position
+     */
+    public TransactionView get(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return journal.view(rows[index]);
+    }
+
+    @Override
+    public Iterator<TransactionView> iterator() {
+        return new Slice(rows, 0, size).iterator();
+    }
+
+    /**
+     * @return the position of the first transaction with the timestamp greater than the value
+     */
+    private int firstAfter(final long value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (journal.timestamp(rows[middle]) <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Read-only views over a part of an array of offsets
+     */
+    private final class Slice extends AbstractList<TransactionView> {
+        private final int[] sliceRows;
+        private final int from;
+        private final int to;
+
+        Slice(final int[] sliceRows, final int from, final int to) {
+            this.sliceRows = sliceRows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public TransactionView get(final int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return journal.view(sliceRows[from + index]);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -2,13 +2,28 @@ package org.poo.transactions;
 
 import org.poo.accounts.Account;
 import org.poo.bank.Bank;
+import org.poo.bank.RateTable;
 import org.poo.bank.User;
 import org.poo.cards.Card;
+import org.poo.cards.OneTimeCard;
 import org.poo.fileio.CommandInput;
+import org.poo.utils.IdGenerator;
 
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * The commands that move money between accounts. They can be called from several threads at
+ * once (with the journal of the bank in its concurrent mode): every operation locks the
+ * accounts it changes and the users whose histories it writes, through the striped
+ * {@link AccountLocks} of the bank, so the balance checks and the updates are done together.
+ * A payment with a card does not lock for its balance: the check and the debit are a single
+ * compare-and-set on the account, and only the histories are written under the locks.
+ * The exchange rates are not locked either: every operation reads the current rate table of
+ * the bank once, which never changes (a new rate publishes a new table), converts all its
+ * amounts with it and records its version in the transactions.
+ * The accounts and cards themselves must not be added or removed while they run.
+ */
 public class TransactionService {
     private final Bank bank;
 
@@ -19,9 +34,11 @@ public class TransactionService {
     /**
      * Executes the pay online command
      * @param command the object with the whole input
+     * @param idGenerator the generator of the new number of a one-time card
      * @throws Exception if the user or the account is not found
      */
-    public void payOnline(final CommandInput command) throws Exception {
+    public void payOnline(final CommandInput command, final IdGenerator idGenerator)
+            throws Exception {
         User user = bank.getUserWithEmail(command.getEmail());
         if (user == null) {
             return;
@@ -32,41 +49,86 @@ public class TransactionService {
             throw new Exception("Card not found");
         }
 
-        Card card = account.getCard(command.getCardNumber());
+        // the card index of the bank only has the cards of existing accounts, and the card
+        // number maps to this account
+        Card card = bank.getCard(command.getCardNumber());
         if (card == null) {
             throw new Exception("Card not found");
         }
 
+        if (!(card instanceof OneTimeCard)) {
+            payWithCard(user, account, card, command, idGenerator);
+            return;
+        }
+
+        // a one-time card gets a new number when it pays, so the whole payment is done under
+        // the locks and a second payment with the old number finds no card
+        AccountLocks locks = bank.getAccountLocks();
+        long locked = locks.lock(account.getIban(), user.getEmail());
+        try {
+            card = bank.getCard(command.getCardNumber());
+            if (card == null) {
+                throw new Exception("Card not found");
+            }
+            payWithCard(user, account, card, command, idGenerator);
+        } finally {
+            locks.unlock(locked);
+        }
+    }
+
+    private void payWithCard(final User user, final Account account, final Card card,
+                             final CommandInput command, final IdGenerator idGenerator)
+            throws Exception {
         // if the card is frozen, don't do the transaction
         if (card.isFrozen()) {
             Transaction transaction = new Transaction.TransactionBuilder()
+                    .setKind(TransactionKind.FROZEN_CARD_PAYMENT)
                     .setDescription("The card is frozen")
                     .setTimestamp(command.getTimestamp())
                     .build();
 
-            user.addTransaction(transaction);
-            account.addTransaction(transaction);
+            addToHistories(user, account, transaction);
             return;
         }
 
         // convert amount to account currency
-        double exchangeRate = bank.getExchangeRate(command.getCurrency(), account.getCurrency());
+        RateTable rates = bank.getRateTable();
+        double exchangeRate = rates.getExchangeRate(command.getCurrency(),
+                account.getCurrency(), account.getCurrencyId());
         double amountInAccountCurrency = command.getAmount() * exchangeRate;
 
-        if (account.hasEnoughBalance(amountInAccountCurrency)) {
-            account.withdraw(amountInAccountCurrency);
-        } else {
+        // the balance is checked and debited in one atomic step
+        if (!account.tryWithdraw(amountInAccountCurrency)) {
             Transaction transaction = new Transaction.TransactionBuilder()
+                    .setKind(TransactionKind.INSUFFICIENT_FUNDS)
                     .setDescription("Insufficient funds")
                     .setTimestamp(command.getTimestamp())
                     .build();
 
-            user.addTransaction(transaction);
-            account.addTransaction(transaction);
+            addToHistories(user, account, transaction);
             return;
         }
 
-        card.handlePostPayment(account, user, command, amountInAccountCurrency);
+        AccountLocks locks = bank.getAccountLocks();
+        long locked = locks.lock(account.getIban(), user.getEmail());
+        try {
+            card.handlePostPayment(account, user, command, amountInAccountCurrency,
+                    rates.getVersion(), idGenerator);
+        } finally {
+            locks.unlock(locked);
+        }
+    }
+
+    private void addToHistories(final User user, final Account account,
+                                final Transaction transaction) {
+        AccountLocks locks = bank.getAccountLocks();
+        long locked = locks.lock(account.getIban(), user.getEmail());
+        try {
+            int row = user.addTransaction(transaction);
+            account.getTransactions().addRow(row);
+        } finally {
+            locks.unlock(locked);
+        }
     }
 
     /**
@@ -98,8 +160,22 @@ public class TransactionService {
             }
         }
 
+        AccountLocks locks = bank.getAccountLocks();
+        long locked = locks.lock(senderAccount.getIban(), receiverAccount.getIban(),
+                user.getEmail(), senderUser.getEmail(), receiverUser.getEmail());
+        try {
+            sendMoney(command, senderAccount, receiverAccount, user, senderUser, receiverUser);
+        } finally {
+            locks.unlock(locked);
+        }
+    }
+
+    private void sendMoney(final CommandInput command, final Account senderAccount,
+                           final Account receiverAccount, final User user,
+                           final User senderUser, final User receiverUser) throws Exception {
         // convert amount to receiver currency
-        double exchangeRate = bank.getExchangeRate(senderAccount.getCurrency(),
+        RateTable rates = bank.getRateTable();
+        double exchangeRate = rates.getExchangeRate(senderAccount.getCurrency(),
                 receiverAccount.getCurrency());
         double amountInReceiverCurrency = command.getAmount() * exchangeRate;
 
@@ -110,7 +186,8 @@ public class TransactionService {
                 .setAmountSender(command.getAmount())
                 .setAmountReceiver(amountInReceiverCurrency)
                 .setTimestamp(command.getTimestamp())
-                .setTransferType("sent")
+                .setKind(TransactionKind.TRANSFER_SENT)
+                .setRateVersion(rates.getVersion())
                 .build();
 
         Transaction transactionReceiver = new Transaction.TransactionBuilder()
@@ -120,29 +197,31 @@ public class TransactionService {
                 .setAmountSender(command.getAmount())
                 .setAmountReceiver(amountInReceiverCurrency)
                 .setTimestamp(command.getTimestamp())
-                .setTransferType("received")
+                .setKind(TransactionKind.TRANSFER_RECEIVED)
+                .setRateVersion(rates.getVersion())
                 .build();
 
         try {
             transactionSender.doTransactionSendMoney();
         } catch (Exception e) {
             Transaction transactionError = new Transaction.TransactionBuilder()
+                    .setKind(TransactionKind.INSUFFICIENT_FUNDS)
                     .setDescription(e.getMessage())
                     .setTimestamp(command.getTimestamp())
                     .build();
 
             // if the transaction failed, add it only to the sender
-            user.addTransaction(transactionError);
-            senderAccount.addTransaction(transactionError);
-            receiverAccount.addTransaction(transactionError);
+            int row = user.addTransaction(transactionError);
+            senderAccount.getTransactions().addRow(row);
+            receiverAccount.getTransactions().addRow(row);
             return;
         }
 
         // add the transactions to the sender and receiver
-        senderUser.addTransaction(transactionSender);
-        receiverUser.addTransaction(transactionReceiver);
-        senderAccount.addTransaction(transactionSender);
-        receiverAccount.addTransaction(transactionReceiver);
+        int sentRow = senderUser.addTransaction(transactionSender);
+        int receivedRow = receiverUser.addTransaction(transactionReceiver);
+        senderAccount.getTransactions().addRow(sentRow);
+        receiverAccount.getTransactions().addRow(receivedRow);
     }
 
     /**
@@ -150,15 +229,17 @@ public class TransactionService {
      * @param accounts list of accounts involved in the split payment
      * @param amount the amount of each user to pay in the given currency
      * @param currency the currency in which the amount is given
+     * @param rates the exchange rates the amount is converted with
      * @return the last account that has insufficient funds or null if everyone has enough money
      */
     public Account everyoneHasEnoughBalance(final List<Account> accounts, final double amount,
-                                            final String currency) {
+                                            final String currency, final RateTable rates) {
         Account brokenAccount = null;
         for (Account account : accounts) {
             double amountInAccountCurrency = 0;
             try {
-                double exchangeRate = bank.getExchangeRate(currency, account.getCurrency());
+                double exchangeRate = rates.getExchangeRate(currency, account.getCurrency(),
+                        account.getCurrencyId());
                 amountInAccountCurrency = amount * exchangeRate;
             } catch (Exception e) {
                 brokenAccount = account;
@@ -184,63 +265,119 @@ public class TransactionService {
             }
         }
 
+        // every account and the history of its owner
+        String[] keys = new String[accounts.size() * 2];
+        for (int i = 0; i < accounts.size(); i++) {
+            String iban = accounts.get(i).getIban();
+            User user = bank.getUserWithAccount(iban);
+            keys[2 * i] = iban;
+            keys[2 * i + 1] = user == null ? null : user.getEmail();
+        }
+
+        AccountLocks locks = bank.getAccountLocks();
+        long locked = locks.lock(keys);
+        try {
+            splitPayment(commandInput, accounts);
+        } finally {
+            locks.unlock(locked);
+        }
+    }
+
+    private void splitPayment(final CommandInput commandInput, final List<Account> accounts) {
+        List<String> accountsInput = commandInput.getAccounts();
         double amount = commandInput.getAmount();
         double amountToPay = amount / accounts.size();
+        // the same for every account, so it is formatted once
+        String description = "Split payment of " + String.format("%.2f", amount) + " "
+                + commandInput.getCurrency();
+
+        // the check and the shares use the same rates
+        RateTable rates = bank.getRateTable();
 
         // if not everyone has enough money (if brokenAccount is null, everyone has enough money)
         Account brokenAccount = everyoneHasEnoughBalance(accounts, amountToPay,
-                commandInput.getCurrency());
+                commandInput.getCurrency(), rates);
         if (brokenAccount != null) {
-            for (Account account : accounts) {
-                Transaction transaction = new Transaction.TransactionBuilder()
-                        .setDescription("Split payment of " + String.format("%.2f", amount)
-                                + " " + commandInput.getCurrency())
-                        .setError("Account " + brokenAccount.getIban()
-                                + " has insufficient funds for a split payment.")
-                        .setTimestamp(commandInput.getTimestamp())
-                        .setCurrency(commandInput.getCurrency())
-                        .setAmountSplitted(amountToPay)
-                        .setInvolvedAccounts(accountsInput)
-                        .build();
-
-                User user = bank.getUserWithAccount(account.getIban());
-                if (user == null) {
-                    return;
-                }
-                user.addTransaction(transaction);
-                account.addTransaction(transaction);
-            }
+            failSplitPayment(commandInput, accounts, description, amountToPay, brokenAccount,
+                    rates.getVersion());
             return;
         }
 
-        // everyone has enough money, do the transactions
-        for (Account account : accounts) {
-            double amountInAccountCurrency;
+        // everyone has enough money, take the share of every account
+        double[] shares = new double[accounts.size()];
+        for (int i = 0; i < accounts.size(); i++) {
             try {
-                double exchangeRate = bank.getExchangeRate(commandInput.getCurrency(),
-                        account.getCurrency());
-                amountInAccountCurrency = amountToPay * exchangeRate;
+                double exchangeRate = rates.getExchangeRate(commandInput.getCurrency(),
+                        accounts.get(i).getCurrency(), accounts.get(i).getCurrencyId());
+                shares[i] = amountToPay * exchangeRate;
             } catch (Exception e) {
                 // if no exchange rate is found, don't do the transaction
                 return;
             }
-            account.withdraw(amountInAccountCurrency);
+        }
+        for (int i = 0; i < accounts.size(); i++) {
+            Account account = accounts.get(i);
+            if (accounts.indexOf(account) < i) {
+                // an account listed again was only checked for one share, and pays every
+                // share it is listed for even if that takes it below zero
+                account.withdraw(shares[i]);
+                continue;
+            }
+            // a card payment (which takes no lock) may have spent the money since the check,
+            // then the shares already taken are given back and the split fails
+            if (!account.tryWithdraw(shares[i])) {
+                for (int j = 0; j < i; j++) {
+                    accounts.get(j).deposit(shares[j]);
+                }
+                failSplitPayment(commandInput, accounts, description, amountToPay,
+                        account, rates.getVersion());
+                return;
+            }
+        }
 
+        for (Account account : accounts) {
             Transaction transaction = new Transaction.TransactionBuilder()
-                    .setDescription("Split payment of " + String.format("%.2f", amount)
-                            + " " + commandInput.getCurrency())
+                    .setKind(TransactionKind.SPLIT_PAYMENT)
+                    .setDescription(description)
                     .setTimestamp(commandInput.getTimestamp())
                     .setCurrency(commandInput.getCurrency())
                     .setAmountSplitted(amountToPay)
                     .setInvolvedAccounts(accountsInput)
+                    .setRateVersion(rates.getVersion())
+                    .build();
+
+            User user = bank.getUserWithAccount(account.getIban());
+            if (user == null) {
+                return;
+            }
+            int row = user.addTransaction(transaction);
+            account.getTransactions().addRow(row);
+        }
+    }
+
+    private void failSplitPayment(final CommandInput commandInput, final List<Account> accounts,
+                                  final String description, final double amountToPay,
+                                  final Account brokenAccount, final int rateVersion) {
+        String error = "Account " + brokenAccount.getIban()
+                + " has insufficient funds for a split payment.";
+        for (Account account : accounts) {
+            Transaction transaction = new Transaction.TransactionBuilder()
+                    .setKind(TransactionKind.SPLIT_PAYMENT_FAILED)
+                    .setDescription(description)
+                    .setError(error)
+                    .setTimestamp(commandInput.getTimestamp())
+                    .setCurrency(commandInput.getCurrency())
+                    .setAmountSplitted(amountToPay)
+                    .setInvolvedAccounts(commandInput.getAccounts())
+                    .setRateVersion(rateVersion)
                     .build();
 
             User user = bank.getUserWithAccount(account.getIban());
             if (user == null) {
                 return;
             }
-            user.addTransaction(transaction);
-            account.addTransaction(transaction);
+            int row = user.addTransaction(transaction);
+            account.getTransactions().addRow(row);
         }
     }
 }
@@ -0,0 +1,198 @@
+package org.poo.transactions;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A transaction of the journal, read straight from its columns
+ */
+public final class TransactionView {
+    private final TransactionJournal journal;
+    private final int row;
+
+    TransactionView(final TransactionJournal journal, final int row) {
+        this.journal = journal;
+        this.row = row;
+    }
+
+    /**
+     * @return the kind of the transaction
+     */
+    public TransactionKind getKind() {
+        return journal.kind(row);
+    }
+
+    /**
+     * @return the timestamp of the transaction
+     */
+    public int getTimestamp() {
+        return journal.timestamp(row);
+    }
+
+    /**
+     * @return the description of the transaction
+     */
+    public String getDescription() {
+        return journal.description(row);
+    }
+
+    /**
+     * @return the amount of the transaction (0 for the kinds that have no amount)
+     */
+    public double getAmount() {
+        return journal.amount(row);
+    }
+
+    /**
+     * @return the version of the exchange rates the transaction converted its amounts with or
+     * TransactionJournal.NO_RATE_VERSION for the kinds that convert nothing
+     */
+    public int getRateVersion() {
+        return journal.rateVersion(row);
+    }
+
+    /**
+     * @return the commerciant of a card payment or null for the other kinds
+     */
+    public String getCommerciant() {
+        return getKind() == TransactionKind.CARD_PAYMENT ? journal.firstRef(row) : null;
+    }
+
+    /**
+     * Transforms the transaction into an ObjectNode
+     * @param mapper the ObjectMapper used to create the ObjectNode
+     * @return the ObjectNode
+     */
+    public ObjectNode transformToAnObjectNode(final ObjectMapper mapper) {
+        ObjectNode objectNode = mapper.createObjectNode();
+
+        objectNode.put("timestamp", getTimestamp());
+        objectNode.put("description", getDescription());
+
+        TransactionKind kind = getKind();
+        switch (kind) {
+            case TRANSFER_SENT, TRANSFER_RECEIVED -> {
+                objectNode.put("senderIBAN", journal.firstRef(row));
+                objectNode.put("receiverIBAN", journal.secondRef(row));
+                objectNode.put("transferType", transferType(kind));
+                if (getAmount() > 0) {
+                    objectNode.put("amount", transferAmount());
+                }
+            }
+            case CARD_CREATED, CARD_DESTROYED -> {
+                objectNode.put("card", journal.firstRef(row));
+                objectNode.put("cardHolder", journal.secondRef(row));
+                objectNode.put("account", journal.thirdRef(row));
+            }
+            case CARD_PAYMENT -> {
+                if (getAmount() > 0) {
+                    objectNode.put("amount", getAmount());
+                }
+                if (journal.firstRef(row) != null) {
+                    objectNode.put("commerciant", journal.firstRef(row));
+                }
+            }
+            case SPLIT_PAYMENT, SPLIT_PAYMENT_FAILED -> {
+                if (journal.firstRef(row) != null) {
+                    objectNode.put("currency", journal.firstRef(row));
+                }
+                if (getAmount() > 0) {
+                    objectNode.put("amount", getAmount());
+                }
+                if (journal.secondRef(row) != null) {
+                    objectNode.put("error", journal.secondRef(row));
+                }
+                List<String> involvedAccounts = journal.accountList(row);
+                if (involvedAccounts != null && !involvedAccounts.isEmpty()) {
+                    ArrayNode accountsArray = mapper.createArrayNode();
+                    for (String account : involvedAccounts) {
+                        accountsArray.add(account);
+                    }
+                    objectNode.set("involvedAccounts", accountsArray);
+                }
+            }
+            default -> {
+                // only the description
+            }
+        }
+
+        return objectNode;
+    }
+
+    /**
+     * Writes the transaction straight through the generator, with the same fields (and
+     * field order) as transformToAnObjectNode
+     * @param generator the generator the transaction is written to
+     * @throws IOException if the transaction cannot be written
+     */
+    public void writeTo(final JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("timestamp", getTimestamp());
+        generator.writeStringField("description", getDescription());
+
+        TransactionKind kind = getKind();
+        switch (kind) {
+            case TRANSFER_SENT, TRANSFER_RECEIVED -> {
+                generator.writeStringField("senderIBAN", journal.firstRef(row));
+                generator.writeStringField("receiverIBAN", journal.secondRef(row));
+                generator.writeStringField("transferType", transferType(kind));
+                if (getAmount() > 0) {
+                    generator.writeStringField("amount", transferAmount());
+                }
+            }
+            case CARD_CREATED, CARD_DESTROYED -> {
+                generator.writeStringField("card", journal.firstRef(row));
+                generator.writeStringField("cardHolder", journal.secondRef(row));
+                generator.writeStringField("account", journal.thirdRef(row));
+            }
+            case CARD_PAYMENT -> {
+                if (getAmount() > 0) {
+                    generator.writeNumberField("amount", getAmount());
+                }
+                if (journal.firstRef(row) != null) {
+                    generator.writeStringField("commerciant", journal.firstRef(row));
+                }
+            }
+            case SPLIT_PAYMENT, SPLIT_PAYMENT_FAILED -> {
+                if (journal.firstRef(row) != null) {
+                    generator.writeStringField("currency", journal.firstRef(row));
+                }
+                if (getAmount() > 0) {
+                    generator.writeNumberField("amount", getAmount());
+                }
+                if (journal.secondRef(row) != null) {
+                    generator.writeStringField("error", journal.secondRef(row));
+                }
+                List<String> involvedAccounts = journal.accountList(row);
+                if (involvedAccounts != null && !involvedAccounts.isEmpty()) {
+                    generator.writeArrayFieldStart("involvedAccounts");
+                    for (String account : involvedAccounts) {
+                        generator.writeString(account);
+                    }
+                    generator.writeEndArray();
+                }
+            }
+            default -> {
+                // only the description
+            }
+        }
+
+        generator.writeEndObject();
+    }
+
+    private static String transferType(final TransactionKind kind) {
+        return kind == TransactionKind.TRANSFER_SENT ? "sent" : "received";
+    }
+
+    /**
+     * @return the amount of a sendMoney transaction with its currency
+     */
+    private String transferAmount() {
+        return String.format(getAmount() + " " + journal.thirdRef(row));
+    }
+}
@@ -0,0 +1,99 @@
+package org.poo.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+/**
+ * Generates the IBANs and card numbers of a bank. Every bank has its own generator, always
+ * starting from the same seeds, so independent banks generate the same numbers for the same
+ * commands (and can run at the same time).
+ */
+public final class IdGenerator {
+    private static final int IBAN_SEED = 1;
+    private static final int CARD_SEED = 2;
+    private static final int DIGIT_BOUND = 10;
+    private static final int DIGIT_GENERATION = 16;
+    private static final String RO_STR = "RO";
+    private static final String POO_STR = "POOB";
+
+    private Random ibanRandom;
+    private Random cardRandom;
+
+    public IdGenerator() {
+        this.ibanRandom = new Random(IBAN_SEED);
+        this.cardRandom = new Random(CARD_SEED);
+    }
+
+    /**
+     * Generates an IBAN code.
+     *
+     * @return the IBAN as String
+     */
+    public String generateIBAN() {
+        StringBuilder sb = new StringBuilder(RO_STR);
+        for (int i = 0; i < RO_STR.length(); i++) {
+            sb.append(ibanRandom.nextInt(DIGIT_BOUND));
+        }
+
+        sb.append(POO_STR);
+        for (int i = 0; i < DIGIT_GENERATION; i++) {
+            sb.append(ibanRandom.nextInt(DIGIT_BOUND));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates a card number.
+     *
+     * @return the card number as String
+     */
+    public String generateCardNumber() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < DIGIT_GENERATION; i++) {
+            sb.append(cardRandom.nextInt(DIGIT_BOUND));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Saves the state of the generator, so a restored bank generates the same IBANs and
+     * card numbers as the bank it was saved from.
+     *
+     * @return the state, to be given to restoreState
+     * @throws IOException if the state cannot be written
+     */
+    public byte[] saveState() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(ibanRandom);
+            output.writeObject(cardRandom);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Restores the state saved by saveState.
+     *
+     * @param state the saved state
+     * @throws IOException if the state cannot be read
+     */
+    public void restoreState(final byte[] state) throws IOException {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(state))) {
+            input.setObjectInputFilter(
+                    ObjectInputFilter.Config.createFilter("java.util.Random;!*"));
+            Random iban = (Random) input.readObject();
+            Random card = (Random) input.readObject();
+            ibanRandom = iban;
+            cardRandom = card;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Invalid generator state", e);
+        }
+    }
+}
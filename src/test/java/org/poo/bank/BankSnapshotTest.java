@@ -0,0 +1,114 @@
+package org.poo.bank;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.poo.fileio.CommandInput;
+import org.poo.fileio.ObjectInput;
+import org.poo.output.JsonGeneratorSink;
+import org.poo.output.OutputSink;
+import org.poo.transactions.TransactionJournal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Every bank has its own state (no singletons), and a bank loaded from a snapshot goes on as
+ * the bank that was saved would have
+ */
+class BankSnapshotTest {
+    private static final String[] INPUTS = {
+        "input/test08_advanced_split_payment.json",
+        "input/test13_more_savings.json",
+        "input/test18_large_input_part1.json",
+        "input/test20_large_input_part3.json",
+    };
+    private static final int CUTS = 3;
+
+    @TempDir
+    private Path directory;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void banksRunAtOnceGiveTheOutputsOfSeparateRuns() throws Exception {
+        List<ArrayNode> expected = new ArrayList<>();
+        for (String input : INPUTS) {
+            expected.add(run(read(input), null, null));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(INPUTS.length);
+        try {
+            List<Future<ArrayNode>> outputs = new ArrayList<>();
+            for (String input : INPUTS) {
+                outputs.add(executor.submit(() -> run(read(input), null, null)));
+            }
+            for (int i = 0; i < INPUTS.length; i++) {
+                assertEquals(expected.get(i), outputs.get(i).get(), INPUTS[i]);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void aLoadedSnapshotGoesOnAsTheSavedBank() throws IOException {
+        for (String input : INPUTS) {
+            ObjectInput objectInput = read(input);
+            ArrayNode expected = run(objectInput, null, null);
+            CommandInput[] commands = objectInput.getCommands();
+
+            for (int cut = 1; cut <= CUTS; cut++) {
+                int saved = commands.length * cut / (CUTS + 1);
+                Path snapshot = directory.resolve("bank" + cut + ".snapshot");
+                objectInput.setCommands(Arrays.copyOf(commands, saved));
+                ArrayNode output = run(objectInput, null, snapshot);
+
+                Bank bank = BankSnapshot.read(snapshot, new TransactionJournal());
+                assertEquals(saved, bank.getCommandCount());
+                // the loaded bank saves the same snapshot again
+                Path again = directory.resolve("again" + cut + ".snapshot");
+                BankSnapshot.write(bank, again);
+                assertArrayEquals(Files.readAllBytes(snapshot), Files.readAllBytes(again));
+
+                objectInput.setCommands(Arrays.copyOfRange(commands, saved, commands.length));
+                output.addAll(run(objectInput, bank, null));
+                assertEquals(expected, output, input + " saved after " + saved);
+            }
+            objectInput.setCommands(commands);
+        }
+    }
+
+    private ObjectInput read(final String input) throws IOException {
+        return mapper.readValue(new File(input), ObjectInput.class);
+    }
+
+    /**
+     * Runs the commands on a new bank (or on the given one), saving it to the snapshot file
+     * at the end if one is given
+     */
+    private ArrayNode run(final ObjectInput input, final Bank bank, final Path snapshot)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputSink output = new JsonGeneratorSink(bytes, mapper, false)) {
+            InitBank initBank = bank == null ? new InitBank(input, output)
+                    : new InitBank(bank, output);
+            initBank.setSnapshotFile(snapshot);
+            initBank.run(input);
+        }
+        return (ArrayNode) mapper.readTree(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,145 @@
+package org.poo.bank;
+
+import org.junit.jupiter.api.Test;
+import org.poo.fileio.ExchangeInput;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The cache gives the rates of the matrix whatever its capacity, keeps at most that many
+ * pairs, and a rate added after gives a table that starts with no pairs
+ */
+class CachedRateTableTest {
+    private static final int CURRENCIES = 16;
+    private static final int GROUPS = 3;
+    private static final int[] CAPACITIES = {1, 2, 7, 1_000};
+    private static final int LOOKUPS = 5_000;
+    private static final double NEW_RATE = 3.5;
+
+    @Test
+    void theCacheGivesTheRatesOfTheMatrix() {
+        ExchangeInput[] rates = randomRates(new Random(4));
+        ExchangeRate matrix = new ExchangeRate(rates);
+        for (int capacity : CAPACITIES) {
+            CachedRateTable cache = new CachedRateTable(capacity);
+            ExchangeRate cached = new ExchangeRate(rates, cache);
+
+            Random random = new Random(capacity);
+            int sameCurrency = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                String from = currency(random.nextInt(CURRENCIES));
+                String to = currency(random.nextInt(CURRENCIES));
+                assertEquals(rate(matrix, from, to), rate(cached, from, to),
+                        from + " -> " + to + " with capacity " + capacity);
+                assertTrue(cache.size() <= capacity, "capacity " + capacity);
+                if (from.equals(to)) {
+                    sameCurrency++;
+                }
+            }
+            // a currency to itself is never looked up in the cache
+            assertEquals(LOOKUPS - sameCurrency, cache.getHits() + cache.getMisses());
+        }
+    }
+
+    @Test
+    void aPairIsFoundOnceWhileItIsKept() throws Exception {
+        CachedRateTable cache = new CachedRateTable(CAPACITIES[CAPACITIES.length - 1]);
+        ExchangeRate cached = new ExchangeRate(new ExchangeInput[] {
+                exchange("EUR", "RON", 5), exchange("RON", "HUF", 80),
+                exchange("USD", "CAD", 1.25)}, cache);
+
+        assertEquals(5 * 80, cached.getExchangeRate("EUR", "HUF"));
+        assertEquals(5 * 80, cached.getExchangeRate("EUR", "HUF"));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.size());
+
+        // a pair without a path is kept too
+        assertThrows(Exception.class, () -> cached.getExchangeRate("EUR", "USD"));
+        assertEquals(2, cache.size());
+        assertThrows(Exception.class, () -> cached.getExchangeRate("EUR", "USD"));
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void theLeastRecentlyUsedPairMakesRoomForANewOne() throws Exception {
+        // a single pair, so a single segment
+        CachedRateTable cache = new CachedRateTable(1);
+        ExchangeRate cached = new ExchangeRate(new ExchangeInput[] {
+                exchange("EUR", "RON", 5), exchange("RON", "HUF", 80)}, cache);
+
+        assertEquals(5 * 80, cached.getExchangeRate("EUR", "HUF"));
+        assertEquals(5 * 80, cached.getExchangeRate("EUR", "HUF"));
+        assertEquals(1.0 / 5, cached.getExchangeRate("RON", "EUR"));
+        assertEquals(5 * 80, cached.getExchangeRate("EUR", "HUF"));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertThrows(IllegalArgumentException.class, () -> new CachedRateTable(0));
+    }
+
+    @Test
+    void aNewRateGivesATableWithoutPairs() throws Exception {
+        ExchangeRate cached = new ExchangeRate(new ExchangeInput[] {
+                exchange("EUR", "RON", 5), exchange("RON", "HUF", 80)},
+                RateTable.cached(CAPACITIES[CAPACITIES.length - 1]));
+        CachedRateTable before = (CachedRateTable) cached.getRateTable();
+        assertEquals(5 * 80, cached.getExchangeRate("EUR", "HUF"));
+        assertEquals(1, before.size());
+
+        cached.addExchangeRate("EUR", "RON", NEW_RATE);
+        CachedRateTable after = (CachedRateTable) cached.getRateTable();
+        assertEquals(0, after.size());
+        assertEquals(NEW_RATE * 80, cached.getExchangeRate("EUR", "HUF"));
+        assertEquals(1.0 / 80 / NEW_RATE, cached.getExchangeRate("HUF", "EUR"), 1e-12);
+        // the table published before keeps its rates and its pairs
+        assertEquals(5 * 80, before.getExchangeRate("EUR", "HUF"));
+        assertEquals(1, before.size());
+        // the counters are shared by the versions of the table
+        assertEquals(before.getMisses(), after.getMisses());
+    }
+
+    /**
+     * A few groups of currencies, each a random tree with a few more rates; the currencies of
+     * different groups have no path between them
+     */
+    private static ExchangeInput[] randomRates(final Random random) {
+        List<ExchangeInput> rates = new ArrayList<>();
+        // the group of a currency is its index modulo GROUPS
+        for (int i = GROUPS; i < CURRENCIES; i++) {
+            int from = random.nextInt(i / GROUPS) * GROUPS + i % GROUPS;
+            rates.add(exchange(currency(from), currency(i), 1 + random.nextInt(CURRENCIES)));
+        }
+        for (int i = GROUPS; i + GROUPS < CURRENCIES; i += GROUPS) {
+            rates.add(exchange(currency(i), currency(i + GROUPS), 2));
+        }
+        return rates.toArray(new ExchangeInput[0]);
+    }
+
+    private static double rate(final ExchangeRate rates, final String from, final String to) {
+        try {
+            return rates.getExchangeRate(from, to);
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+
+    private static String currency(final int index) {
+        return "C" + index;
+    }
+
+    private static ExchangeInput exchange(final String from, final String to,
+                                          final double value) {
+        ExchangeInput rate = new ExchangeInput();
+        rate.setFrom(from);
+        rate.setTo(to);
+        rate.setRate(value);
+        return rate;
+    }
+}
@@ -0,0 +1,159 @@
+package org.poo.bank;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.poo.fileio.CommandInput;
+import org.poo.fileio.ObjectInput;
+import org.poo.output.JsonGeneratorSink;
+import org.poo.output.OutputSink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The command log keeps the commands it committed, drops a record a crash cut short or
+ * damaged, and gives them back in order from the sequence number a bank stopped at
+ */
+class CommandLogTest {
+    private static final String INPUT = "input/test18_large_input_part1.json";
+    private static final int BATCH_SIZE = 8;
+    private static final int THREADS = 4;
+    private static final int COMMANDS = 5;
+    private static final int LAST_BYTE = 1;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void replayGivesBackTheCommittedCommandsInOrder() throws IOException {
+        Path file = directory.resolve("commands.wal");
+        try (CommandLog log = CommandLog.create(file, BATCH_SIZE)) {
+            for (int i = 0; i < COMMANDS; i++) {
+                log.append(i, command(i));
+            }
+            log.commit();
+            // never committed, so never executed either
+            log.append(COMMANDS, command(COMMANDS));
+        }
+
+        try (CommandLog log = CommandLog.open(file, BATCH_SIZE)) {
+            List<Integer> timestamps = new ArrayList<>();
+            assertEquals(COMMANDS - 2, log.replay(2, command -> timestamps.add(
+                    command.getTimestamp())));
+            assertEquals(List.of(2, 3, 4), timestamps);
+        }
+    }
+
+    @Test
+    void openDropsARecordThatFailsItsChecksum() throws IOException {
+        Path file = directory.resolve("commands.wal");
+        try (CommandLog log = CommandLog.create(file, BATCH_SIZE)) {
+            for (int i = 0; i < COMMANDS; i++) {
+                log.append(i, command(i));
+            }
+            log.commit();
+        }
+        // damage the checksum of the last record
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer lastByte = ByteBuffer.allocate(LAST_BYTE);
+            channel.read(lastByte, channel.size() - LAST_BYTE);
+            lastByte.put(0, (byte) ~lastByte.get(0)).rewind();
+            channel.write(lastByte, channel.size() - LAST_BYTE);
+        }
+
+        try (CommandLog log = CommandLog.open(file, BATCH_SIZE)) {
+            assertEquals(COMMANDS - 1, log.replay(0, command -> { }));
+            // the next command takes the place of the dropped one
+            log.append(COMMANDS - 1, command(COMMANDS - 1));
+            log.commit();
+        }
+        try (CommandLog log = CommandLog.open(file, BATCH_SIZE)) {
+            assertEquals(COMMANDS, log.replay(0, command -> { }));
+        }
+    }
+
+    @Test
+    void replayRejectsALogThatRepeatsASequenceNumber() throws IOException {
+        Path file = directory.resolve("commands.wal");
+        try (CommandLog log = CommandLog.create(file, BATCH_SIZE)) {
+            log.append(0, command(0));
+            log.append(1, command(1));
+            log.append(1, command(2));
+            log.commit();
+        }
+        try (CommandLog log = CommandLog.open(file, BATCH_SIZE)) {
+            assertThrows(IOException.class, () -> log.replay(0, command -> { }));
+        }
+    }
+
+    @Test
+    void recoverWithSeveralCommandThreadsGivesTheOutputOfAFullRun() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectInput input = mapper.readValue(new File(INPUT), ObjectInput.class);
+        byte[] expected = runAll(mapper, input);
+
+        // a run that stops (without a snapshot) after half of the commands; the commands
+        // of a user wait in the segments of the scheduler while they are logged
+        Path file = directory.resolve("commands.wal");
+        ObjectInput firstHalf = mapper.readValue(new File(INPUT), ObjectInput.class);
+        firstHalf.setCommands(Arrays.copyOf(input.getCommands(),
+                input.getCommands().length / 2));
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try (CommandLog log = CommandLog.create(file, BATCH_SIZE);
+             OutputSink output = new JsonGeneratorSink(new ByteArrayOutputStream(), mapper,
+                     true)) {
+            InitBank initBank = new InitBank(firstHalf, output);
+            initBank.setExecutor(executor);
+            initBank.setCommandLog(log);
+            initBank.run(firstHalf);
+        }
+
+        // a new bank replays the log and runs the rest of the input
+        ByteArrayOutputStream recovered = new ByteArrayOutputStream();
+        ObjectInput again = mapper.readValue(new File(INPUT), ObjectInput.class);
+        try (CommandLog log = CommandLog.open(file, BATCH_SIZE);
+             OutputSink output = new JsonGeneratorSink(recovered, mapper, true)) {
+            InitBank initBank = new InitBank(again, output);
+            initBank.setExecutor(executor);
+            initBank.setCommandLog(log);
+            assertEquals(firstHalf.getCommands().length, initBank.recover(log));
+            initBank.run(again);
+            assertEquals(input.getCommands().length, initBank.getBank().getCommandCount());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertArrayEquals(expected, recovered.toByteArray());
+    }
+
+    private static byte[] runAll(final ObjectMapper mapper, final ObjectInput input)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputSink output = new JsonGeneratorSink(bytes, mapper, true)) {
+            new InitBank(input, output).run(input);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static CommandInput command(final int timestamp) {
+        CommandInput command = new CommandInput();
+        command.setCommand("printUsers");
+        command.setTimestamp(timestamp);
+        return command;
+    }
+}
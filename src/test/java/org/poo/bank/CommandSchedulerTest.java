@@ -0,0 +1,92 @@
+package org.poo.bank;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.poo.accounts.Account;
+import org.poo.accounts.ClassicAccount;
+import org.poo.commands.CommandFactory;
+import org.poo.fileio.CommandInput;
+import org.poo.fileio.ExchangeInput;
+import org.poo.fileio.UserInput;
+import org.poo.output.BufferedSink;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The command count of the bank is the sequence number of the next command, which the command
+ * log and the snapshots rely on, so it has to count the commands held in a segment too
+ */
+class CommandSchedulerTest {
+    private static final int USERS = 3;
+    private static final int THREADS = 2;
+    private static final double FUNDS = 10;
+
+    @Test
+    void commandsAreCountedWhenTheyAreSubmitted() {
+        ObjectMapper mapper = new ObjectMapper();
+        Bank bank = createBank();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CommandScheduler scheduler = new CommandScheduler(bank,
+                    new CommandFactory(mapper, bank.getIdGenerator()), mapper,
+                    new BufferedSink(mapper), executor);
+
+            List<Account> accounts = new ArrayList<>();
+            for (User user : bank.getUsers()) {
+                accounts.addAll(user.getAccounts());
+            }
+            long count = bank.getCommandCount();
+            for (Account account : accounts) {
+                scheduler.submit(addFunds(account));
+                count++;
+                // held in the segment, but already counted
+                assertEquals(count, bank.getCommandCount());
+                assertEquals(0, account.getBalance());
+            }
+
+            // a barrier runs the segment and counts itself
+            CommandInput printUsers = new CommandInput();
+            printUsers.setCommand("printUsers");
+            scheduler.submit(printUsers);
+            assertEquals(count + 1, bank.getCommandCount());
+            for (Account account : accounts) {
+                assertEquals(FUNDS, account.getBalance());
+            }
+
+            scheduler.flush();
+            assertEquals(count + 1, bank.getCommandCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static CommandInput addFunds(final Account account) {
+        CommandInput commandInput = new CommandInput();
+        commandInput.setCommand("addFunds");
+        commandInput.setAccount(account.getIban());
+        commandInput.setAmount(FUNDS);
+        return commandInput;
+    }
+
+    private static Bank createBank() {
+        UserInput[] users = new UserInput[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = new UserInput();
+            users[i].setFirstName("First" + i);
+            users[i].setLastName("Last" + i);
+            users[i].setEmail("user" + i + "@poo.ro");
+        }
+        Bank bank = new Bank(users, new ExchangeInput[0]);
+        int timestamp = 0;
+        for (User user : bank.getUsers()) {
+            bank.addAccountToUser(user.getEmail(), new ClassicAccount(
+                    bank.getIdGenerator().generateIBAN(), "RON", "classic", timestamp++));
+        }
+        return bank;
+    }
+}
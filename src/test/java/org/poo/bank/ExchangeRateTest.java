@@ -0,0 +1,123 @@
+package org.poo.bank;
+
+import org.junit.jupiter.api.Test;
+import org.poo.fileio.ExchangeInput;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every rate added publishes a new table with the next version and leaves the tables published
+ * before as they were, so a reader always sees the rates of one version
+ */
+class ExchangeRateTest {
+    private static final int CACHE_CAPACITY = 1_000;
+    private static final List<Supplier<RateTable>> TABLES = List.of(RateTable::matrix,
+            () -> RateTable.cached(CACHE_CAPACITY));
+    private static final int READERS = 4;
+    private static final int UPDATES = 2_000;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    @Test
+    void anAddedRatePublishesANewVersionAndKeepsTheOldTable() throws Exception {
+        for (Supplier<RateTable> table : TABLES) {
+            ExchangeRate rates = new ExchangeRate(new ExchangeInput[] {
+                    exchange("EUR", "RON", 5), exchange("RON", "HUF", 80),
+                    exchange("USD", "CAD", 1.25)}, table.get());
+            RateTable first = rates.getRateTable();
+            assertEquals(0, first.getVersion());
+            assertEquals(5 * 80, first.getExchangeRate("EUR", "HUF"));
+
+            rates.addExchangeRate("EUR", "RON", 4);
+            RateTable second = rates.getRateTable();
+            assertEquals(1, second.getVersion());
+            assertEquals(4 * 80, second.getExchangeRate("EUR", "HUF"));
+            assertEquals(1.0 / 1.25, second.getExchangeRate("CAD", "USD"));
+
+            // a new currency gets the next id in the new table only
+            rates.addExchangeRate("GBP", "EUR", 1.2);
+            RateTable third = rates.getRateTable();
+            assertEquals(2, third.getVersion());
+            int gbp = third.getCurrencyId("GBP");
+            assertEquals(third.getCurrencyId("CAD") + 1, gbp);
+            assertEquals(1.2 * 4 * 80, third.getExchangeRate("GBP", "HUF"), 1e-12);
+            assertEquals(-1, second.getCurrencyId("GBP"));
+            assertTrue(Double.isNaN(second.getExchangeRate(gbp, second.getCurrencyId("EUR"))));
+
+            // the tables published before did not change
+            assertEquals(0, first.getVersion());
+            assertEquals(5 * 80, first.getExchangeRate("EUR", "HUF"));
+            assertEquals(1, second.getVersion());
+            assertEquals(4 * 80, second.getExchangeRate("EUR", "HUF"));
+
+            assertEquals(3, rates.getInitialRates().size());
+            assertEquals(List.of("EUR", "GBP"), rates.getAddedRates().stream()
+                    .map(ExchangeInput::getFrom).toList());
+            assertSame(third, rates.getRateTable());
+        }
+    }
+
+    @Test
+    void readersAlwaysSeeTheRatesOfOneVersion() throws Exception {
+        for (Supplier<RateTable> table : TABLES) {
+            ExchangeRate rates = new ExchangeRate(new ExchangeInput[] {
+                    exchange("EUR", "RON", rateOf(0)), exchange("RON", "HUF", 1)},
+                    table.get());
+            ExecutorService pool = Executors.newFixedThreadPool(READERS);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> readers = new ArrayList<>();
+            try {
+                for (int i = 0; i < READERS; i++) {
+                    readers.add(pool.submit(() -> {
+                        start.await();
+                        int seen = 0;
+                        int version = 0;
+                        while (version < UPDATES) {
+                            RateTable current = rates.getRateTable();
+                            assertTrue(current.getVersion() >= version);
+                            version = current.getVersion();
+                            // both pairs of the table follow the rate of its own version
+                            assertEquals(rateOf(version), current.getExchangeRate("EUR", "RON"));
+                            assertEquals(rateOf(version), current.getExchangeRate("EUR", "HUF"));
+                            seen++;
+                        }
+                        return seen;
+                    }));
+                }
+                start.countDown();
+                for (int version = 1; version <= UPDATES; version++) {
+                    rates.addExchangeRate("EUR", "RON", rateOf(version));
+                }
+                for (Future<Integer> reader : readers) {
+                    assertTrue(reader.get(TIMEOUT_SECONDS, TimeUnit.SECONDS) > 0);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+            assertEquals(UPDATES, rates.getRateTable().getVersion());
+        }
+    }
+
+    private static double rateOf(final int version) {
+        return 1 + version;
+    }
+
+    private static ExchangeInput exchange(final String from, final String to,
+                                          final double value) {
+        ExchangeInput rate = new ExchangeInput();
+        rate.setFrom(from);
+        rate.setTo(to);
+        rate.setRate(value);
+        return rate;
+    }
+}
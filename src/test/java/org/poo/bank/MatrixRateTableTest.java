@@ -0,0 +1,97 @@
+package org.poo.bank;
+
+import org.junit.jupiter.api.Test;
+import org.poo.fileio.ExchangeInput;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The matrix gives the rates of the given pairs, their inverses and the products over longer
+ * paths, and the same rates whatever the order the rates of the bank were given in
+ */
+class MatrixRateTableTest {
+    private static final double DELTA = 1e-12;
+    private static final int CURRENCIES = 12;
+    private static final int EXTRA_RATES = 8;
+    private static final int ORDERS = 5;
+
+    @Test
+    void ratesFollowTheGraph() throws Exception {
+        ExchangeRate rates = new ExchangeRate(new ExchangeInput[] {
+                rate("EUR", "RON", 5), rate("RON", "HUF", 80), rate("USD", "CAD", 1.25)});
+
+        assertEquals(1.0, rates.getExchangeRate("EUR", "EUR"));
+        assertEquals(5, rates.getExchangeRate("EUR", "RON"));
+        assertEquals(1.0 / 5, rates.getExchangeRate("RON", "EUR"));
+        assertEquals(5 * 80, rates.getExchangeRate("EUR", "HUF"), DELTA);
+        assertEquals(1.0 / 80 / 5, rates.getExchangeRate("HUF", "EUR"), DELTA);
+        assertEquals(1.0 / 1.25, rates.getExchangeRate("CAD", "USD"));
+
+        int eur = rates.getCurrencyId("EUR");
+        int huf = rates.getCurrencyId("HUF");
+        assertEquals(rates.getExchangeRate("EUR", "HUF"), rates.getExchangeRate(eur, huf));
+        assertEquals(-1, rates.getCurrencyId("GBP"));
+
+        // no path between the two groups, or a currency the bank has no rate for
+        assertTrue(Double.isNaN(rates.getExchangeRate(eur, rates.getCurrencyId("USD"))));
+        assertThrows(Exception.class, () -> rates.getExchangeRate("EUR", "USD"));
+        assertThrows(Exception.class, () -> rates.getExchangeRate("EUR", "GBP"));
+    }
+
+    @Test
+    void ratesDoNotDependOnTheOrderTheyWereGivenIn() throws Exception {
+        // a tree over all the currencies and a few more rates, with several shortest paths
+        // between some pairs (a pair given twice would take the last rate, which depends on
+        // the order, so every pair is given once)
+        Random random = new Random(2);
+        List<ExchangeInput> given = new ArrayList<>();
+        Set<String> pairs = new HashSet<>();
+        for (int i = 1; i < CURRENCIES; i++) {
+            int from = random.nextInt(i);
+            pairs.add(from + " " + i);
+            given.add(rate(currency(from), currency(i), 1 + random.nextInt(CURRENCIES) / 4.0));
+        }
+        while (given.size() < CURRENCIES - 1 + EXTRA_RATES) {
+            int from = random.nextInt(CURRENCIES);
+            int to = random.nextInt(CURRENCIES);
+            if (from < to && pairs.add(from + " " + to)) {
+                given.add(rate(currency(from), currency(to),
+                        1 + random.nextInt(CURRENCIES) / 4.0));
+            }
+        }
+
+        ExchangeRate expected = new ExchangeRate(given.toArray(new ExchangeInput[0]));
+        for (int order = 0; order < ORDERS; order++) {
+            Collections.shuffle(given, random);
+            ExchangeRate shuffled = new ExchangeRate(given.toArray(new ExchangeInput[0]));
+            for (int from = 0; from < CURRENCIES; from++) {
+                for (int to = 0; to < CURRENCIES; to++) {
+                    assertEquals(expected.getExchangeRate(currency(from), currency(to)),
+                            shuffled.getExchangeRate(currency(from), currency(to)),
+                            currency(from) + " -> " + currency(to));
+                }
+            }
+        }
+    }
+
+    private static String currency(final int index) {
+        return "C" + index;
+    }
+
+    private static ExchangeInput rate(final String from, final String to, final double value) {
+        ExchangeInput rate = new ExchangeInput();
+        rate.setFrom(from);
+        rate.setTo(to);
+        rate.setRate(value);
+        return rate;
+    }
+}
@@ -0,0 +1,117 @@
+package org.poo.bank;
+
+import org.junit.jupiter.api.Test;
+import org.poo.fileio.ExchangeInput;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A pair is converted over the path with the fewest rates and, among those, the best rate;
+ * both directions of a pair go over the same path, whatever the order the rates were given in
+ * and whichever table resolves them
+ */
+class RateTableTest {
+    private static final double DELTA = 1e-12;
+    private static final int CURRENCIES = 10;
+    private static final int EXTRA_RATES = 12;
+    private static final int ORDERS = 6;
+    private static final int CACHE_CAPACITY = 1_000;
+    private static final List<Supplier<RateTable>> TABLES = List.of(RateTable::matrix,
+            () -> RateTable.cached(CACHE_CAPACITY));
+
+    @Test
+    void thePathWithTheFewestRatesWinsOverABetterRate() throws Exception {
+        for (Supplier<RateTable> table : TABLES) {
+            ExchangeRate rates = new ExchangeRate(new ExchangeInput[] {
+                    exchange("A", "B", 10), exchange("B", "D", 10), exchange("A", "D", 2)},
+                    table.get());
+            assertEquals(2, rates.getExchangeRate("A", "D"));
+            assertEquals(1.0 / 2, rates.getExchangeRate("D", "A"));
+        }
+    }
+
+    @Test
+    void theBestRateWinsAmongAsShortPathsBothWays() throws Exception {
+        for (Supplier<RateTable> table : TABLES) {
+            ExchangeRate rates = new ExchangeRate(new ExchangeInput[] {
+                    exchange("A", "B", 2), exchange("B", "D", 2), exchange("A", "C", 4),
+                    exchange("C", "D", 1.5)}, table.get());
+            // over C, not over B (2 * 2)
+            assertEquals(4 * 1.5, rates.getExchangeRate("A", "D"));
+            // the same path back, multiplied from D
+            assertEquals(1.0 / 1.5 * (1.0 / 4), rates.getExchangeRate("D", "A"));
+            // the best rate one way is the worst the other way, yet D -> A still goes over C
+            assertTrue(rates.getExchangeRate("D", "A") < 1.0 / 2 * (1.0 / 2));
+        }
+    }
+
+    @Test
+    void anEqualRateIsBrokenByTheNamesWhateverTheOrderOfTheRates() throws Exception {
+        List<ExchangeInput> given = new ArrayList<>(List.of(exchange("A", "B", 2),
+                exchange("B", "D", 3), exchange("A", "C", 3), exchange("C", "D", 2)));
+        Random random = new Random(5);
+        for (int order = 0; order < ORDERS; order++) {
+            Collections.shuffle(given, random);
+            for (Supplier<RateTable> table : TABLES) {
+                ExchangeRate rates = new ExchangeRate(given.toArray(new ExchangeInput[0]),
+                        table.get());
+                // over B, whose name comes before C
+                assertEquals(2.0 * 3, rates.getExchangeRate("A", "D"));
+                assertEquals(1.0 / 3 * (1.0 / 2), rates.getExchangeRate("D", "A"));
+            }
+        }
+    }
+
+    @Test
+    void bothDirectionsOfEveryPairGoOverOnePath() throws Exception {
+        Random random = new Random(6);
+        List<ExchangeInput> given = new ArrayList<>();
+        for (int i = 1; i < CURRENCIES; i++) {
+            given.add(exchange(currency(random.nextInt(i)), currency(i), randomRate(random)));
+        }
+        for (int i = 0; i < EXTRA_RATES; i++) {
+            int from = random.nextInt(CURRENCIES);
+            int to = (from + 1 + random.nextInt(CURRENCIES - 1)) % CURRENCIES;
+            given.add(exchange(currency(from), currency(to), randomRate(random)));
+        }
+
+        ExchangeRate matrix = new ExchangeRate(given.toArray(new ExchangeInput[0]));
+        ExchangeRate cached = new ExchangeRate(given.toArray(new ExchangeInput[0]),
+                RateTable.cached(CACHE_CAPACITY));
+        for (int from = 0; from < CURRENCIES; from++) {
+            for (int to = 0; to < CURRENCIES; to++) {
+                String pair = currency(from) + " -> " + currency(to);
+                double there = matrix.getExchangeRate(currency(from), currency(to));
+                double back = matrix.getExchangeRate(currency(to), currency(from));
+                // only the rounding of the products, never another path
+                assertEquals(1.0, there * back, DELTA, pair);
+                assertEquals(there, cached.getExchangeRate(currency(from), currency(to)),
+                        pair);
+            }
+        }
+    }
+
+    private static double randomRate(final Random random) {
+        return 1 + random.nextInt(CURRENCIES) / 3.0;
+    }
+
+    private static String currency(final int index) {
+        return "C" + index;
+    }
+
+    private static ExchangeInput exchange(final String from, final String to,
+                                          final double value) {
+        ExchangeInput rate = new ExchangeInput();
+        rate.setFrom(from);
+        rate.setTo(to);
+        rate.setRate(value);
+        return rate;
+    }
+}
@@ -0,0 +1,98 @@
+package org.poo.bank;
+
+import org.junit.jupiter.api.Test;
+import org.poo.accounts.Account;
+import org.poo.accounts.ClassicAccount;
+import org.poo.fileio.ExchangeInput;
+import org.poo.fileio.UserInput;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * An alias set on several accounts finds the first of them in the order of the users and of
+ * their accounts, whichever was given the alias last, and stays with the others when one of
+ * them is deleted or given another alias
+ */
+class RegistryTest {
+    private static final int USERS = 2;
+    private static final String ALIAS = "alias";
+    private static final String OTHER_ALIAS = "other";
+
+    @Test
+    void aSharedAliasFindsTheFirstAccountOfTheFirstUser() {
+        Bank bank = createBank();
+        Account first = accountOf(bank, 0, 0);
+        Account second = accountOf(bank, 0, 1);
+        Account other = accountOf(bank, 1, 0);
+
+        bank.setAlias(other.getIban(), ALIAS);
+        assertSame(other, bank.getAccountWithAlias(ALIAS));
+        bank.setAlias(second.getIban(), ALIAS);
+        assertSame(second, bank.getAccountWithAlias(ALIAS));
+        bank.setAlias(first.getIban(), ALIAS);
+        assertSame(first, bank.getAccountWithAlias(ALIAS));
+        // setting it again changes nothing
+        bank.setAlias(other.getIban(), ALIAS);
+        assertSame(first, bank.getAccountWithAlias(ALIAS));
+    }
+
+    @Test
+    void deletingAnAccountKeepsTheAliasOfTheOthers() throws Exception {
+        Bank bank = createBank();
+        Account first = accountOf(bank, 0, 0);
+        Account other = accountOf(bank, 1, 0);
+        bank.setAlias(other.getIban(), ALIAS);
+        bank.setAlias(first.getIban(), ALIAS);
+
+        bank.getUsers().get(0).deleteAccount(first.getIban(), 0);
+        assertSame(other, bank.getAccountWithAlias(ALIAS));
+        bank.getUsers().get(1).deleteAccount(other.getIban(), 0);
+        assertNull(bank.getAccountWithAlias(ALIAS));
+    }
+
+    @Test
+    void changingAnAliasKeepsTheOldOneForTheOthers() {
+        Bank bank = createBank();
+        Account first = accountOf(bank, 0, 0);
+        Account other = accountOf(bank, 1, 0);
+        bank.setAlias(other.getIban(), ALIAS);
+        bank.setAlias(first.getIban(), ALIAS);
+
+        bank.setAlias(first.getIban(), OTHER_ALIAS);
+        assertSame(other, bank.getAccountWithAlias(ALIAS));
+        assertSame(first, bank.getAccountWithAlias(OTHER_ALIAS));
+        bank.setAlias(other.getIban(), OTHER_ALIAS);
+        assertNull(bank.getAccountWithAlias(ALIAS));
+        assertSame(first, bank.getAccountWithAlias(OTHER_ALIAS));
+    }
+
+    private static Account accountOf(final Bank bank, final int user, final int account) {
+        return bank.getUsers().get(user).getAccounts().get(account);
+    }
+
+    /**
+     * A bank with two users, the first one with two accounts and the second one with one
+     */
+    private static Bank createBank() {
+        UserInput[] users = new UserInput[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = new UserInput();
+            users[i].setFirstName("First" + i);
+            users[i].setLastName("Last" + i);
+            users[i].setEmail("user" + i + "@poo.ro");
+        }
+        Bank bank = new Bank(users, new ExchangeInput[0]);
+        int timestamp = 0;
+        for (int i = 0; i < USERS; i++) {
+            addAccount(bank, users[i].getEmail(), timestamp++);
+        }
+        addAccount(bank, users[0].getEmail(), timestamp);
+        return bank;
+    }
+
+    private static void addAccount(final Bank bank, final String email, final int timestamp) {
+        bank.addAccountToUser(email, new ClassicAccount(bank.getIdGenerator().generateIBAN(),
+                "RON", "classic", timestamp));
+    }
+}
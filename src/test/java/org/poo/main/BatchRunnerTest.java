@@ -0,0 +1,56 @@
+package org.poo.main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The files of a batch run in parallel give the same outputs as when they are run one after
+ * the other
+ */
+class BatchRunnerTest {
+    private static final String INPUT_DIRECTORY = "input";
+    private static final int WORKERS = 4;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void aParallelBatchWritesTheOutputsOfSequentialRuns()
+            throws IOException, InterruptedException {
+        List<File> inputs = Arrays.stream(Objects.requireNonNull(
+                        new File(INPUT_DIRECTORY).listFiles()))
+                .sorted(Comparator.comparing(File::getName))
+                .toList();
+        Path sequential = Files.createDirectories(directory.resolve("sequential"));
+        for (File input : inputs) {
+            Main.run(input, sequential.resolve("out_" + input.getName()).toString());
+        }
+
+        Path parallel = directory.resolve("parallel");
+        List<BatchRunner.FileResult> results = BatchRunner.run(inputs, parallel, WORKERS);
+        assertEquals(inputs.size(), results.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            BatchRunner.FileResult result = results.get(i);
+            String name = inputs.get(i).getName();
+            assertEquals(name, result.getName());
+            assertNull(result.getError(), name);
+            assertTrue(result.getCommands() > 0, name);
+            assertArrayEquals(Files.readAllBytes(sequential.resolve("out_" + name)),
+                    Files.readAllBytes(parallel.resolve("out_" + name)), name);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.poo.transactions;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The totals of the index must be the same doubles as adding the payments of the range one
+ * by one, in the order they were made, however long the range is
+ */
+class SpendingsIndexTest {
+    private static final int PAYMENTS = 2_000;
+    private static final int MAX_STEP = 3;
+    private static final double MAX_AMOUNT = 200;
+    private static final int RANGES = 500;
+    private static final String[] COMMERCIANTS = {"Emag", "Ikea", "Zara"};
+
+    @Test
+    void totalsAddThePaymentsOfTheRangeInOrder() {
+        Random random = new Random(1);
+        SpendingsIndex index = new SpendingsIndex();
+        int[] timestamps = new int[PAYMENTS];
+        double[] amounts = new double[PAYMENTS];
+        String[] commerciants = new String[PAYMENTS];
+        int timestamp = 0;
+        for (int i = 0; i < PAYMENTS; i++) {
+            // several payments may share a timestamp
+            timestamp += random.nextInt(MAX_STEP);
+            timestamps[i] = timestamp;
+            amounts[i] = random.nextDouble() * MAX_AMOUNT;
+            commerciants[i] = COMMERCIANTS[random.nextInt(COMMERCIANTS.length)];
+            index.addPayment(commerciants[i], timestamps[i], amounts[i]);
+        }
+
+        for (int r = 0; r < RANGES; r++) {
+            int start = random.nextInt(timestamp + 1);
+            int end = start + random.nextInt(timestamp + 1 - start);
+            assertTotals(index.totals(start, end), timestamps, amounts, commerciants, start,
+                    end);
+        }
+        assertTotals(index.totals(0, timestamp), timestamps, amounts, commerciants, 0,
+                timestamp);
+    }
+
+    @Test
+    void totalsKeepTheOrderOfAPaymentThatCameOutOfOrder() {
+        SpendingsIndex index = new SpendingsIndex();
+        int[] timestamps = {1, 2, 3, 2, 4, 2};
+        double[] amounts = {0.1, 0.2, 1e16, 0.3, 1, -1e16};
+        String[] commerciants = new String[timestamps.length];
+        for (int i = 0; i < timestamps.length; i++) {
+            commerciants[i] = COMMERCIANTS[0];
+            index.addPayment(commerciants[i], timestamps[i], amounts[i]);
+        }
+
+        assertTotals(index.totals(2, 2), timestamps, amounts, commerciants, 2, 2);
+        assertTotals(index.totals(1, 4), timestamps, amounts, commerciants, 1, 4);
+        assertTrue(index.totals(5, 10).isEmpty());
+    }
+
+    /**
+     * Checks the totals against the payments of the range added one by one, in their order
+     */
+    private static void assertTotals(final List<Commerciant> totals, final int[] timestamps,
+                                     final double[] amounts, final String[] commerciants,
+                                     final int start, final int end) {
+        int found = 0;
+        for (String name : COMMERCIANTS) {
+            Double expected = null;
+            for (int i = 0; i < timestamps.length; i++) {
+                if (commerciants[i].equals(name) && timestamps[i] >= start
+                        && timestamps[i] <= end) {
+                    expected = expected == null ? amounts[i] : expected + amounts[i];
+                }
+            }
+            if (expected == null) {
+                continue;
+            }
+            Commerciant commerciant = totals.get(found++);
+            assertEquals(name, commerciant.getName());
+            assertEquals(expected, commerciant.getTotalAmountSpent(),
+                    name + " " + start + ".." + end);
+        }
+        assertEquals(found, totals.size());
+    }
+}
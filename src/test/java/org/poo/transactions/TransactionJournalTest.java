@@ -0,0 +1,159 @@
+package org.poo.transactions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * The journal interns only the strings that repeat a lot, and a journal read back (from a
+ * snapshot or from its file) gives the same rows and interns the new ones the same way
+ */
+class TransactionJournalTest {
+    private static final int COMMANDS = 20;
+    private static final String ERROR = "Account RO0 has insufficient funds for a split payment.";
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void addedStringsAreNotInterned() {
+        StringPool pool = new StringPool();
+        int first = pool.add(ERROR);
+        int second = pool.add(ERROR);
+        assertNotEquals(first, second);
+        int interned = pool.intern(ERROR);
+        assertNotEquals(first, interned);
+        assertNotEquals(second, interned);
+        assertEquals(interned, pool.intern(ERROR));
+
+        pool.reuse(first);
+        assertEquals(interned, pool.intern(ERROR));
+        assertEquals(StringPool.NONE, pool.add(null));
+    }
+
+    @Test
+    void splitPaymentsOfOneCommandShareTheirStrings() {
+        TransactionJournal journal = new TransactionJournal();
+        List<String> accounts = List.of("RO1", "RO2");
+        journal.append(failedSplit(0, ERROR, accounts));
+        int strings = poolSize(journal);
+        journal.append(failedSplit(0, ERROR, accounts));
+        assertEquals(strings, poolSize(journal));
+
+        // an equal error of another command is not looked up
+        journal.append(failedSplit(1, new String(ERROR), new ArrayList<>(accounts)));
+        assertEquals(strings + 2, poolSize(journal));
+    }
+
+    @Test
+    void aJournalReadFromASnapshotKeepsItsRows() throws IOException {
+        TransactionJournal journal = new TransactionJournal();
+        fill(journal);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        journal.writeTo(new DataOutputStream(bytes));
+
+        TransactionJournal restored = new TransactionJournal();
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertSameRows(journal, restored);
+
+        // the strings read back are interned again, the errors are not
+        appendMore(journal);
+        appendMore(restored);
+        assertSameRows(journal, restored);
+        assertEquals(poolSize(journal), poolSize(restored));
+    }
+
+    @Test
+    void aReopenedJournalKeepsItsRows() throws IOException {
+        Path file = directory.resolve("journal.bin");
+        TransactionJournal expected = new TransactionJournal();
+        fill(expected);
+        try (TransactionJournal journal = TransactionJournal.create(file)) {
+            fill(journal);
+        }
+
+        try (TransactionJournal journal = TransactionJournal.open(file)) {
+            assertSameRows(expected, journal);
+            appendMore(expected);
+            appendMore(journal);
+            assertSameRows(expected, journal);
+            assertEquals(poolSize(expected), poolSize(journal));
+        }
+    }
+
+    /**
+     * Split payments that fail with an error, some of them with a description equal to the
+     * error of an earlier one
+     */
+    private static void fill(final TransactionJournal journal) {
+        for (int i = 0; i < COMMANDS; i++) {
+            String error = "Account RO" + i + " has insufficient funds for a split payment.";
+            List<String> accounts = List.of("RO" + i, "RO" + (i + 1));
+            journal.append(failedSplit(i, error, accounts));
+            journal.append(failedSplit(i, error, accounts));
+            journal.appendCardPayment(i, i, i % 2 == 0 ? ERROR : "Emag",
+                    TransactionJournal.NO_RATE_VERSION);
+            journal.append(new Transaction.TransactionBuilder()
+                    .setKind(TransactionKind.ACCOUNT_CREATED)
+                    .setDescription(i % 2 == 0 ? error : "New account created")
+                    .setTimestamp(i)
+                    .build());
+        }
+    }
+
+    private static void appendMore(final TransactionJournal journal) {
+        journal.appendCardPayment(COMMANDS, 1, "Emag", TransactionJournal.NO_RATE_VERSION);
+        journal.appendCardPayment(COMMANDS, 1, ERROR, TransactionJournal.NO_RATE_VERSION);
+        journal.append(failedSplit(COMMANDS, ERROR, List.of()));
+    }
+
+    private static Transaction failedSplit(final int timestamp, final String error,
+                                           final List<String> accounts) {
+        return new Transaction.TransactionBuilder()
+                .setKind(TransactionKind.SPLIT_PAYMENT_FAILED)
+                .setDescription("Split payment of 10.00 EUR")
+                .setError(error)
+                .setTimestamp(timestamp)
+                .setCurrency("EUR")
+                .setAmountSplitted(timestamp)
+                .setInvolvedAccounts(accounts)
+                .setRateVersion(TransactionJournal.NO_RATE_VERSION)
+                .build();
+    }
+
+    private static void assertSameRows(final TransactionJournal expected,
+                                       final TransactionJournal actual) {
+        ObjectMapper mapper = new ObjectMapper();
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.view(row).transformToAnObjectNode(mapper),
+                    actual.view(row).transformToAnObjectNode(mapper), "row " + row);
+        }
+        for (TransactionKind kind : TransactionKind.values()) {
+            assertEquals(expected.count(kind), actual.count(kind), kind.name());
+        }
+    }
+
+    private static int poolSize(final TransactionJournal journal) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            journal.writeTo(new DataOutputStream(bytes));
+            return StringPool.readFrom(new DataInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray()))).size();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
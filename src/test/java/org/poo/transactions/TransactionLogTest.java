@@ -0,0 +1,121 @@
+package org.poo.transactions;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A transaction is stored once in the journal whatever the number of histories it is in, and
+ * a range of a history is the same whether it is found with the binary searches or, once a
+ * transaction came out of order, by filtering all of them
+ */
+class TransactionLogTest {
+    private static final int TRANSACTIONS = 1_000;
+    private static final int MAX_STEP = 3;
+    private static final int RANGES = 300;
+    private static final int LATE_TIMESTAMP = 5;
+
+    @Test
+    void aTransactionInSeveralHistoriesIsAppendedOnce() {
+        TransactionJournal journal = new TransactionJournal();
+        TransactionLog user = new TransactionLog(journal);
+        TransactionLog account = new TransactionLog(journal);
+
+        int row = user.add(transaction(1));
+        account.addRow(row);
+        int payment = user.addCardPayment(2, 1, "Emag", TransactionJournal.NO_RATE_VERSION);
+        account.addRow(payment);
+
+        assertEquals(2, journal.size());
+        assertEquals(1, journal.count(TransactionKind.ACCOUNT_CREATED));
+        assertEquals(1, journal.count(TransactionKind.CARD_PAYMENT));
+        assertEquals(List.of(row, payment), rows(user));
+        assertEquals(List.of(row, payment), rows(account));
+        assertEquals("Emag", account.get(1).getCommerciant());
+    }
+
+    @Test
+    void rangesOfASortedLogAreSlices() {
+        Random random = new Random(3);
+        TransactionJournal journal = new TransactionJournal();
+        TransactionLog log = new TransactionLog(journal);
+        int timestamp = 0;
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            // several transactions may share a timestamp
+            timestamp += random.nextInt(MAX_STEP);
+            log.add(transaction(timestamp));
+        }
+
+        for (int r = 0; r < RANGES; r++) {
+            int start = random.nextInt(timestamp + 1);
+            assertRange(log, start, start + random.nextInt(timestamp + 1 - start));
+        }
+        assertRange(log, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        assertRange(log, timestamp + 1, Integer.MAX_VALUE);
+        assertTrue(log.range(2, 1).isEmpty());
+    }
+
+    @Test
+    void rangesOfALogWithALateTransactionKeepTheOrderOfTheLog() {
+        TransactionJournal journal = new TransactionJournal();
+        TransactionLog log = new TransactionLog(journal);
+        for (int timestamp = 0; timestamp < 2 * LATE_TIMESTAMP; timestamp++) {
+            log.add(transaction(timestamp));
+        }
+        log.add(transaction(LATE_TIMESTAMP));
+        log.add(transaction(2 * LATE_TIMESTAMP));
+
+        List<TransactionView> range = log.range(LATE_TIMESTAMP, LATE_TIMESTAMP + 1);
+        assertEquals(List.of(LATE_TIMESTAMP, LATE_TIMESTAMP + 1, LATE_TIMESTAMP),
+                timestamps(range));
+        for (int start = 0; start <= 2 * LATE_TIMESTAMP; start++) {
+            for (int end = start; end <= 2 * LATE_TIMESTAMP; end++) {
+                assertRange(log, start, end);
+            }
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> range.get(range.size()));
+    }
+
+    /**
+     * Checks the range against the transactions of the log filtered one by one
+     */
+    private static void assertRange(final TransactionLog log, final int start, final int end) {
+        List<Integer> expected = new ArrayList<>();
+        for (TransactionView transaction : log) {
+            if (transaction.getTimestamp() >= start && transaction.getTimestamp() <= end) {
+                expected.add(transaction.getTimestamp());
+            }
+        }
+        assertEquals(expected, timestamps(log.range(start, end)), start + ".." + end);
+    }
+
+    private static List<Integer> timestamps(final List<TransactionView> transactions) {
+        List<Integer> timestamps = new ArrayList<>();
+        for (TransactionView transaction : transactions) {
+            timestamps.add(transaction.getTimestamp());
+        }
+        return timestamps;
+    }
+
+    private static List<Integer> rows(final TransactionLog log) {
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < log.size(); i++) {
+            rows.add(log.getRow(i));
+        }
+        return rows;
+    }
+
+    private static Transaction transaction(final int timestamp) {
+        return new Transaction.TransactionBuilder()
+                .setKind(TransactionKind.ACCOUNT_CREATED)
+                .setDescription("New account created")
+                .setTimestamp(timestamp)
+                .build();
+    }
+}
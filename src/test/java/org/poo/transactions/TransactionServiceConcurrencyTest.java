@@ -0,0 +1,227 @@
+package org.poo.transactions;
+
+import org.junit.jupiter.api.Test;
+import org.poo.accounts.Account;
+import org.poo.accounts.ClassicAccount;
+import org.poo.bank.Bank;
+import org.poo.bank.User;
+import org.poo.fileio.CommandInput;
+import org.poo.fileio.ExchangeInput;
+import org.poo.fileio.UserInput;
+import org.poo.utils.IdGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs card payments, transfers and split payments on one TransactionService from several
+ * threads over a few accounts with little money, so payments keep failing for lack of funds
+ * and split payments keep giving back the shares they took when a card payment (which takes
+ * no lock) spent the money first. All the amounts are exact in binary, so the money left must
+ * be exactly the money at the start minus the card and split payments in the journal.
+ */
+class TransactionServiceConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 20_000;
+    private static final int USERS = 4;
+    private static final double BALANCE = 5_000;
+    private static final double TRANSFER_AMOUNT = 1;
+    private static final double PAYMENT_AMOUNT = 1.5;
+    private static final int SPLIT_ACCOUNTS = 3;
+    private static final int OPERATION_KINDS = 3;
+    private static final long TIMEOUT_SECONDS = 60;
+    private static final String CURRENCY = "RON";
+
+    @Test
+    void concurrentPaymentsConserveMoneyAndNeverOverdraw() throws Exception {
+        Bank bank = createBank(USERS);
+        List<Account> accounts = new ArrayList<>();
+        for (User user : bank.getUsers()) {
+            accounts.addAll(user.getAccounts());
+        }
+
+        TransactionService transactionService = new TransactionService(bank);
+        bank.getJournal().setConcurrent(true);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                Random random = new Random(t);
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        run(bank, transactionService, accounts, random, i);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+            bank.getJournal().setConcurrent(false);
+        }
+
+        double total = 0;
+        for (Account account : accounts) {
+            assertTrue(account.getBalance() >= account.getMinBalance(),
+                    account.getIban() + " went below its minimum balance: "
+                            + account.getBalance());
+            total += account.getBalance();
+        }
+
+        TransactionJournal journal = bank.getJournal();
+        double expected = BALANCE * accounts.size()
+                - PAYMENT_AMOUNT * journal.count(TransactionKind.CARD_PAYMENT)
+                - TRANSFER_AMOUNT * journal.count(TransactionKind.SPLIT_PAYMENT);
+        assertEquals(expected, total, "money was lost or made");
+
+        // the money ran out, so the failure paths ran as well
+        assertTrue(journal.count(TransactionKind.INSUFFICIENT_FUNDS) > 0);
+        assertTrue(journal.count(TransactionKind.SPLIT_PAYMENT_FAILED) > 0);
+    }
+
+    @Test
+    void splitPaymentGivesBackTheSharesWhenAPaymentSpendsTheMoneyFirst() {
+        Bank bank = createBank(2);
+        RacingAccount racing = new RacingAccount(bank.getIdGenerator().generateIBAN());
+        bank.addAccountToUser(bank.getUsers().get(0).getEmail(), racing);
+        racing.setBalance(BALANCE);
+
+        List<String> involved = new ArrayList<>();
+        for (User user : bank.getUsers()) {
+            for (Account account : user.getAccounts()) {
+                involved.add(account.getIban());
+            }
+        }
+        // the racing account comes last, after the shares of the others were taken
+        involved.remove(racing.getIban());
+        involved.add(racing.getIban());
+
+        CommandInput split = new CommandInput();
+        split.setCommand("splitPayment");
+        split.setAccounts(involved);
+        split.setAmount(TRANSFER_AMOUNT * involved.size());
+        split.setCurrency(CURRENCY);
+        split.setTimestamp(0);
+        new TransactionService(bank).splitPayment(split);
+
+        for (String iban : involved) {
+            Account account = bank.getAccountWithIBAN(iban);
+            assertEquals(account == racing ? 0 : BALANCE, account.getBalance(), iban);
+        }
+        TransactionJournal journal = bank.getJournal();
+        assertEquals(0, journal.count(TransactionKind.SPLIT_PAYMENT));
+        assertEquals(involved.size(), journal.count(TransactionKind.SPLIT_PAYMENT_FAILED));
+    }
+
+    /**
+     * A bank where every user has one account in the same currency, with one card
+     */
+    private static Bank createBank(final int userCount) {
+        UserInput[] users = new UserInput[userCount];
+        for (int i = 0; i < userCount; i++) {
+            users[i] = new UserInput();
+            users[i].setFirstName("First" + i);
+            users[i].setLastName("Last" + i);
+            users[i].setEmail("user" + i + "@poo.ro");
+        }
+        ExchangeInput rate = new ExchangeInput();
+        rate.setFrom(CURRENCY);
+        rate.setTo("EUR");
+        rate.setRate(0.2);
+        Bank bank = new Bank(users, new ExchangeInput[] {rate});
+
+        IdGenerator ids = bank.getIdGenerator();
+        int timestamp = 0;
+        for (User user : bank.getUsers()) {
+            Account account = new ClassicAccount(ids.generateIBAN(), CURRENCY, "classic",
+                    timestamp++);
+            bank.addAccountToUser(user.getEmail(), account);
+            account.setBalance(BALANCE);
+            user.createCard(account.getIban(), ids.generateCardNumber(), timestamp++);
+        }
+        return bank;
+    }
+
+    private static void run(final Bank bank, final TransactionService transactionService,
+                            final List<Account> accounts, final Random random,
+                            final int timestamp) throws Exception {
+        Account account = accounts.get(random.nextInt(accounts.size()));
+        User user = bank.getUserWithAccount(account.getIban());
+        switch (random.nextInt(OPERATION_KINDS)) {
+            case 0 -> {
+                CommandInput payment = new CommandInput();
+                payment.setCommand("payOnline");
+                payment.setEmail(user.getEmail());
+                payment.setCardNumber(account.getCards().get(0).getCardNumber());
+                payment.setAmount(PAYMENT_AMOUNT);
+                payment.setCurrency(CURRENCY);
+                payment.setCommerciant("Commerciant");
+                payment.setTimestamp(timestamp);
+                transactionService.payOnline(payment, bank.getIdGenerator());
+            }
+            case 1 -> {
+                CommandInput transfer = new CommandInput();
+                transfer.setCommand("sendMoney");
+                transfer.setAccount(account.getIban());
+                transfer.setReceiver(accounts.get(random.nextInt(accounts.size())).getIban());
+                transfer.setEmail(user.getEmail());
+                transfer.setAmount(TRANSFER_AMOUNT);
+                transfer.setDescription("Transfer");
+                transfer.setTimestamp(timestamp);
+                transactionService.sendMoney(transfer);
+            }
+            default -> {
+                // distinct accounts, an account listed twice is only checked for one share
+                List<String> involved = new ArrayList<>();
+                while (involved.size() < SPLIT_ACCOUNTS) {
+                    String iban = accounts.get(random.nextInt(accounts.size())).getIban();
+                    if (!involved.contains(iban)) {
+                        involved.add(iban);
+                    }
+                }
+                CommandInput split = new CommandInput();
+                split.setCommand("splitPayment");
+                split.setAccounts(involved);
+                split.setAmount(TRANSFER_AMOUNT * SPLIT_ACCOUNTS);
+                split.setCurrency(CURRENCY);
+                split.setTimestamp(timestamp);
+                transactionService.splitPayment(split);
+            }
+        }
+    }
+
+    /**
+     * An account whose money is spent by a card payment (which takes no lock) after a split
+     * payment checked its balance and before the split takes its share
+     */
+    private static final class RacingAccount extends ClassicAccount {
+        private boolean raced;
+
+        RacingAccount(final String iban) {
+            super(iban, CURRENCY, "classic", 0);
+        }
+
+        @Override
+        public boolean tryWithdraw(final double amount) {
+            if (!raced) {
+                raced = true;
+                super.tryWithdraw(getBalance());
+            }
+            return super.tryWithdraw(amount);
+        }
+    }
+}
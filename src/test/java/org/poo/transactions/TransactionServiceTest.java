@@ -0,0 +1,70 @@
+package org.poo.transactions;
+
+import org.junit.jupiter.api.Test;
+import org.poo.accounts.Account;
+import org.poo.accounts.ClassicAccount;
+import org.poo.bank.Bank;
+import org.poo.fileio.CommandInput;
+import org.poo.fileio.ExchangeInput;
+import org.poo.fileio.UserInput;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Split payments run on one thread must give the same balances and histories as before the
+ * service could run concurrently
+ */
+class TransactionServiceTest {
+    private static final String CURRENCY = "EUR";
+    private static final double BALANCE = 100;
+    private static final double SPLIT_AMOUNT = 120;
+    private static final int TIMESTAMP = 3;
+
+    @Test
+    void splitPaymentTakesEveryShareOfAnAccountListedTwice() {
+        Bank bank = createBank();
+        Account account = bank.getUsers().get(0).getAccounts().get(0);
+
+        CommandInput split = new CommandInput();
+        split.setCommand("splitPayment");
+        split.setAccounts(List.of(account.getIban(), account.getIban()));
+        split.setAmount(SPLIT_AMOUNT);
+        split.setCurrency(CURRENCY);
+        split.setTimestamp(TIMESTAMP);
+        new TransactionService(bank).splitPayment(split);
+
+        // only one share is checked, so the account pays both and goes below zero
+        assertEquals(BALANCE - SPLIT_AMOUNT, account.getBalance());
+        TransactionJournal journal = bank.getJournal();
+        assertEquals(2, journal.count(TransactionKind.SPLIT_PAYMENT));
+        assertEquals(0, journal.count(TransactionKind.SPLIT_PAYMENT_FAILED));
+        int splits = 0;
+        for (TransactionView transaction : account.getTransactions()) {
+            if (transaction.getKind() == TransactionKind.SPLIT_PAYMENT) {
+                assertEquals("Split payment of 120.00 EUR", transaction.getDescription());
+                splits++;
+            }
+        }
+        assertEquals(2, splits);
+    }
+
+    private static Bank createBank() {
+        UserInput user = new UserInput();
+        user.setFirstName("First");
+        user.setLastName("Last");
+        user.setEmail("user@poo.ro");
+        ExchangeInput rate = new ExchangeInput();
+        rate.setFrom("RON");
+        rate.setTo(CURRENCY);
+        rate.setRate(0.2);
+        Bank bank = new Bank(new UserInput[] {user}, new ExchangeInput[] {rate});
+
+        Account account = new ClassicAccount(bank.getIdGenerator().generateIBAN(), CURRENCY,
+                "classic", 0);
+        bank.addAccountToUser(user.getEmail(), account);
+        account.setBalance(BALANCE);
+        return bank;
+    }
+}